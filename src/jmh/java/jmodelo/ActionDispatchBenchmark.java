@@ -0,0 +1,215 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jmodelo.annotations.UrlArg;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActionDispatchBenchmark {
+	private static final String[] ACTION_NAMES = {"show", "list", "edit", "rename"};
+
+	public static class BenchmarkController extends Controller {
+		// the actions return a shared result, so that the benchmarks measure the dispatch and not the rendering
+		static final ActionResult RESULT = new ActionResult(new byte[0], "text/html", 200);
+
+		public ActionResult show(@UrlArg(0) int id, String name, double price) {
+			return RESULT;
+		}
+
+		public ActionResult list() {
+			return RESULT;
+		}
+
+		public ActionResult edit(@UrlArg(0) int id) {
+			return RESULT;
+		}
+
+		public ActionResult rename(@UrlArg(0) int id, String name) {
+			return RESULT;
+		}
+	}
+
+	// number of actions called in turn: one keeps every call site monomorphic, several are closer to a running server
+	@Param({"1", "4"})
+	private int actions;
+
+	private Method[] methods;
+	private ActionInvoker[] invokers;
+	private SpreadActionInvoker[] spreadInvokers;
+	private Map<String, String> params;
+	private List<String> urlArgs;
+	private int next;
+
+	@Setup
+	public void setup() throws Exception {
+		methods = new Method[actions];
+		invokers = new ActionInvoker[actions];
+		spreadInvokers = new SpreadActionInvoker[actions];
+		for (int i = 0; i < actions; i++) {
+			for (Method method: BenchmarkController.class.getDeclaredMethods())
+				if (method.getName().equals(ACTION_NAMES[i]))
+					methods[i] = method;
+
+			invokers[i] = new ActionInvoker(BenchmarkController.class, methods[i]);
+			spreadInvokers[i] = new SpreadActionInvoker(BenchmarkController.class, methods[i]);
+		}
+
+		params = new HashMap<>(Map.of("name", "test", "price", "9.99"));
+		urlArgs = List.of("42");
+	}
+
+	private int nextAction() {
+		int i = next;
+		next = i + 1 < actions ? i + 1 : 0;
+		return i;
+	}
+
+	@Benchmark
+	public ActionResult reflection() throws Exception {
+		Method method = methods[nextAction()];
+		Controller controller = (Controller)BenchmarkController.class.getConstructors()[0].newInstance();
+
+		List<Object> paramObjs = new ArrayList<>();
+		for (Parameter param: method.getParameters()) {
+			UrlArg urlArgAnnotation = null;
+			String paramValue = (urlArgAnnotation = param.getAnnotation(UrlArg.class)) != null && urlArgAnnotation.value() < urlArgs.size()
+					? urlArgs.get(urlArgAnnotation.value()) : params.get(param.getName());
+
+			if (param.getType() == int.class)
+				paramObjs.add(Integer.parseInt(paramValue));
+			else if (param.getType() == double.class)
+				paramObjs.add(Double.parseDouble(paramValue));
+			else if (param.getType() == String.class)
+				paramObjs.add(paramValue);
+		}
+
+		return (ActionResult)method.invoke(controller, paramObjs.toArray());
+	}
+
+	@Benchmark
+	public ActionResult spreadMethodHandle() throws Exception {
+		SpreadActionInvoker invoker = spreadInvokers[nextAction()];
+		return invoker.invoke(invoker.newController(), params, urlArgs, null);
+	}
+
+	@Benchmark
+	public ActionResult actionInvoker() throws Exception {
+		ActionInvoker invoker = invokers[nextAction()];
+		return invoker.invoke(invoker.newController(), params, urlArgs, null);
+	}
+
+	// The previous ActionInvoker: the constructor and a spreading method handle in instance fields, so that every call
+	// goes through a handle that is not a constant and passes the arguments boxed in an array.
+	static class SpreadActionInvoker {
+		private final MethodHandle constructor;
+		private final MethodHandle action;
+		private final Binder[] binders;
+
+		SpreadActionInvoker(Class<?> controllerClass, Method method) throws ReflectiveOperationException {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			this.constructor = lookup.unreflectConstructor(controllerClass.getDeclaredConstructor())
+					.asType(MethodType.methodType(Object.class));
+			this.action = lookup.unreflect(method).asSpreader(Object[].class, method.getParameterCount())
+					.asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+
+			Parameter[] parameters = method.getParameters();
+			this.binders = new Binder[parameters.length];
+			for (int i = 0; i < parameters.length; i++)
+				binders[i] = createBinder(parameters[i]);
+		}
+
+		Controller newController() throws Exception {
+			try {
+				return (Controller)(Object)constructor.invokeExact();
+			} catch (Exception e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+
+		ActionResult invoke(Controller controller, Map<String, String> params, List<String> urlArgs, PostData postData)
+				throws Exception {
+			Object[] args = new Object[binders.length];
+			for (int i = 0; i < binders.length; i++)
+				args[i] = binders[i].bind(params, urlArgs, postData);
+
+			try {
+				return (ActionResult)(Object)action.invokeExact((Object)controller, args);
+			} catch (Exception e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new InvocationTargetException(e);
+			}
+		}
+
+		// same binding as ActionInvoker, for the parameter types of the benchmark controller
+		private static Binder createBinder(Parameter param) {
+			Class<?> type = param.getType();
+			Function<String, Object> parser = type == int.class ? Integer::parseInt
+					: type == double.class ? Double::parseDouble : x -> x;
+
+			String name = param.getName();
+			UrlArg urlArgAnnotation = param.getAnnotation(UrlArg.class);
+			if (urlArgAnnotation != null) {
+				int index = urlArgAnnotation.value();
+				return (params, urlArgs, postData) -> {
+					String paramValue = index < urlArgs.size() ? urlArgs.get(index) : params.get(name);
+					return paramValue != null ? parser.apply(paramValue) : null;
+				};
+			}
+
+			return (params, urlArgs, postData) -> {
+				String paramValue = params.get(name);
+				return paramValue != null ? parser.apply(paramValue) : null;
+			};
+		}
+
+		@FunctionalInterface
+		private interface Binder {
+			Object bind(Map<String, String> params, List<String> urlArgs, PostData postData);
+		}
+	}
+}
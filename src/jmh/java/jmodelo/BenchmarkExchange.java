@@ -0,0 +1,130 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+// An exchange that is never sent anywhere, for benchmarking the parts of a request that only read its headers.
+class BenchmarkExchange extends HttpExchange {
+	private final URI requestUri;
+	private final Headers requestHeaders;
+	private final Headers responseHeaders;
+	private final Map<String, Object> attributes;
+	private final ByteArrayOutputStream responseBody;
+	private int responseCode;
+
+	BenchmarkExchange(String requestUri, Headers requestHeaders) {
+		this.requestUri = URI.create(requestUri);
+		this.requestHeaders = requestHeaders;
+		this.responseHeaders = new Headers();
+		this.attributes = new HashMap<>();
+		this.responseBody = new ByteArrayOutputStream();
+		this.responseCode = -1;
+	}
+
+	@Override
+	public Headers getRequestHeaders() {
+		return requestHeaders;
+	}
+
+	@Override
+	public Headers getResponseHeaders() {
+		return responseHeaders;
+	}
+
+	@Override
+	public URI getRequestURI() {
+		return requestUri;
+	}
+
+	@Override
+	public String getRequestMethod() {
+		return "GET";
+	}
+
+	@Override
+	public HttpContext getHttpContext() {
+		return null;
+	}
+
+	@Override
+	public void close() {}
+
+	@Override
+	public InputStream getRequestBody() {
+		return new ByteArrayInputStream(new byte[0]);
+	}
+
+	@Override
+	public OutputStream getResponseBody() {
+		return responseBody;
+	}
+
+	@Override
+	public void sendResponseHeaders(int rCode, long responseLength) {
+		this.responseCode = rCode;
+	}
+
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return new InetSocketAddress("127.0.0.1", 0);
+	}
+
+	@Override
+	public int getResponseCode() {
+		return responseCode;
+	}
+
+	@Override
+	public InetSocketAddress getLocalAddress() {
+		return new InetSocketAddress("127.0.0.1", 0);
+	}
+
+	@Override
+	public String getProtocol() {
+		return "HTTP/1.1";
+	}
+
+	@Override
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	@Override
+	public void setAttribute(String name, Object value) {
+		attributes.put(name, value);
+	}
+
+	@Override
+	public void setStreams(InputStream i, OutputStream o) {}
+
+	@Override
+	public HttpPrincipal getPrincipal() {
+		return null;
+	}
+}
@@ -0,0 +1,108 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Compares the previous split based query and cookie parsing with FormParser.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormParserBenchmark {
+	private URI uri = URI.create("/shop/products/list/42?category=books&q=java+performance&sort=price&page=3&lang=en");
+	private String encodedQuery = "name=Caf%C3%A9+M%C3%BCller&note=a%26b%3Dc&city=S%C3%A3o+Paulo&tags=x%2Cy%2Cz";
+	private String cookieHeader = "sessionid=3f2504e0-4f89-41d3-9a0c-0305e82c3301; theme=dark; lang=en; _ga=GA1.2.1234567890.1690000000";
+
+	@Benchmark
+	public Map<String, String> splitQuery() {
+		return legacyParseParameters(uri.toString().contains("?") ? uri.toString().split("\\?")[1] : "");
+	}
+
+	@Benchmark
+	public Map<String, String> parseQuery() {
+		return FormParser.parseQuery(uri.getRawQuery());
+	}
+
+	@Benchmark
+	public Map<String, String> splitEncodedQuery() {
+		return legacyParseParameters(encodedQuery);
+	}
+
+	@Benchmark
+	public Map<String, String> parseEncodedQuery() {
+		return FormParser.parseQuery(encodedQuery);
+	}
+
+	@Benchmark
+	public Map<String, String> splitCookies() {
+		Map<String, String> cookies = new HashMap<>();
+		String[] pairs = cookieHeader.contains(";") ? cookieHeader.split(";") : new String[] {cookieHeader};
+		for (String pair: pairs) {
+			String[] parts = pair.split("=");
+			cookies.put(parts[0], parts[1]);
+		}
+
+		return cookies;
+	}
+
+	@Benchmark
+	public Map<String, String> parseCookies() {
+		Map<String, String> cookies = new HashMap<>();
+		FormParser.parseCookies(cookieHeader, cookies);
+
+		return cookies;
+	}
+
+	@Benchmark
+	public String[] splitPath() {
+		return uri.toString().contains("?") ? uri.toString().split("\\?")[0].split("/") : uri.toString().split("/");
+	}
+
+	@Benchmark
+	public String[] splitRawPath() {
+		return uri.getRawPath().split("/");
+	}
+
+	// The previous MyHttpHandler.parseParameters, which decoded the whole query before splitting it.
+	private Map<String, String> legacyParseParameters(String query) {
+		Map<String, String> parameters = new HashMap<>();
+		query = URLDecoder.decode(query, StandardCharsets.UTF_8);
+
+		String[] pairs = query.contains("&") ? query.split("&") : new String[] {query};
+		Arrays.stream(pairs).map(x -> x.split("=")).forEach(x -> parameters.put(x[0], x.length > 1 ? x[1] : ""));
+
+		return parameters;
+	}
+}
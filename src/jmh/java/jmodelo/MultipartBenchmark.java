@@ -0,0 +1,137 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Parses a body with one form field and one file part of the given size. Divide the size by the score for MB/s.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultipartBenchmark {
+	private static final String BOUNDARY = "----jmodeloBenchmarkBoundary7MA4YWxkTrZu0gW";
+
+	@Param({"1", "64"})
+	public int megabytes;
+
+	private byte[] body;
+	private int fileStart;
+	private File tempFolder;
+
+	@Setup
+	public void setup() throws IOException {
+		byte[] file = new byte[megabytes * 1024 * 1024];
+		new Random(42).nextBytes(file);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write(("--%s\r\nContent-Disposition: form-data; name=\"title\"\r\n\r\nbenchmark\r\n".formatted(BOUNDARY))
+				.getBytes(StandardCharsets.ISO_8859_1));
+		output.write(("--%s\r\nContent-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n"
+				+ "Content-Type: application/octet-stream\r\n\r\n").formatted(BOUNDARY).getBytes(StandardCharsets.ISO_8859_1));
+		fileStart = output.size();
+		output.write(file);
+		output.write("\r\n--%s--\r\n".formatted(BOUNDARY).getBytes(StandardCharsets.ISO_8859_1));
+		body = output.toByteArray();
+
+		tempFolder = Files.createTempDirectory("jmodelo-multipart").toFile();
+	}
+
+	@TearDown
+	public void tearDown() {
+		for (File f: tempFolder.listFiles())
+			f.delete();
+		tempFolder.delete();
+	}
+
+	@Benchmark
+	public long byteAtATime() throws IOException {
+		// only the file part is copied here, the part headers are skipped
+		InputStream input = new ByteArrayInputStream(body, fileStart, body.length - fileStart);
+
+		File f = readBytesUntilBoundaryAsFile(input, BOUNDARY);
+		long length = f.length();
+		f.delete();
+
+		return length;
+	}
+
+	@Benchmark
+	public long multipartParser() throws IOException {
+		PostData postData = new MultipartParser(new ByteArrayInputStream(body), BOUNDARY, new UploadPolicy(tempFolder)).parse();
+
+		File f = postData.files().get("file").tempFile();
+		long length = f.length();
+		f.delete();
+
+		return length;
+	}
+
+	// The part of the previous parser that copied file parts, reading the body one byte at a time.
+	private File readBytesUntilBoundaryAsFile(InputStream input, String boundary) throws IOException {
+		boundary = "\r\n--" + boundary;
+		File f = new File(tempFolder, "%s.temp".formatted(UUID.randomUUID().toString()));
+		try (BufferedOutputStream fout = new BufferedOutputStream(new FileOutputStream(f, false))) {
+			int bIndex = 0;
+			byte[] temp = new byte[boundary.length()];
+			int b;
+			while ( (b = input.read()) != -1) {
+				if (b == boundary.getBytes()[bIndex]) {
+					temp[bIndex] = (byte)b;
+					bIndex++;
+
+					if (boundary.length() == bIndex) {
+						fout.flush();
+						return f;
+					}
+				}else if (bIndex > 0){
+					fout.write(temp, 0, bIndex);
+					bIndex = 0;
+					fout.write(b);
+				}else
+					fout.write(b);
+			}
+		}
+
+		return f;
+	}
+}
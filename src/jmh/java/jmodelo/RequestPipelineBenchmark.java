@@ -0,0 +1,144 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpServer;
+
+import jmodelo.benchmarks.BenchmarkViews;
+import jmodelo.benchmarks.PipelineController;
+
+// Sends whole requests over the loopback interface to a server running MyHttpHandler, so routing, binding, sessions,
+// views and sendContent are measured together. Nothing leaves the machine.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestPipelineBenchmark {
+	private Path viewsFolder;
+	private MemorySessionStore sessionStore;
+	private HttpServer server;
+	private HttpClient client;
+	private String baseUrl;
+	private String sessionCookie;
+
+	@Setup
+	public void setup() throws IOException, InterruptedException {
+		// without this the small header and body writes of a response wait for delayed acks on keep-alive connections
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		viewsFolder = BenchmarkViews.create();
+		PipelineController.viewsFolder = viewsFolder;
+		PipelineController.largeText = "<p>The quick brown fox jumps over the lazy dog.</p>\n".repeat(1300);
+
+		CompressionPolicy compressionPolicy = new CompressionPolicy();
+		sessionStore = new MemorySessionStore();
+		MyHttpHandler handler = new MyHttpHandler(null, "jmodelo.benchmarks", null, new ConnectionStats(), new RequestStats(),
+				null, new StaticFiles(viewsFolder.toString(), compressionPolicy), compressionPolicy, new ViewEngine(),
+				sessionStore, new UploadPolicy(), new OutputCacheStore(compressionPolicy));
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0, "/", handler);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.start();
+
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+		baseUrl = "http://127.0.0.1:%d".formatted(server.getAddress().getPort());
+
+		HttpResponse<byte[]> response = client.send(request("/pipeline/counter").build(), HttpResponse.BodyHandlers.ofByteArray());
+		sessionCookie = response.headers().firstValue("Set-Cookie").orElseThrow().split(";")[0];
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		client.close();
+		server.stop(0);
+		sessionStore.close();
+		BenchmarkViews.delete(viewsFolder);
+	}
+
+	@Benchmark
+	public byte[] action() throws IOException, InterruptedException {
+		return send(request("/pipeline/hello/42?name=bench"));
+	}
+
+	@Benchmark
+	public byte[] session() throws IOException, InterruptedException {
+		return send(request("/pipeline/counter").header("Cookie", sessionCookie));
+	}
+
+	@Benchmark
+	public byte[] view() throws IOException, InterruptedException {
+		return send(request("/pipeline/page?rows=50"));
+	}
+
+	// The same page served from the output cache, compressed once when it was stored.
+	@Benchmark
+	public byte[] cachedView() throws IOException, InterruptedException {
+		return send(request("/pipeline/cachedPage?rows=50").header("Accept-Encoding", "gzip"));
+	}
+
+	@Benchmark
+	public byte[] staticFile() throws IOException, InterruptedException {
+		return send(request("/page.html"));
+	}
+
+	// About 64KB of html, sent as it is and compressed with gzip.
+	@Benchmark
+	public byte[] largeIdentity() throws IOException, InterruptedException {
+		return send(request("/pipeline/large"));
+	}
+
+	@Benchmark
+	public byte[] largeGzip() throws IOException, InterruptedException {
+		return send(request("/pipeline/large").header("Accept-Encoding", "gzip"));
+	}
+
+	private HttpRequest.Builder request(String path) {
+		return HttpRequest.newBuilder(URI.create(baseUrl + path));
+	}
+
+	private byte[] send(HttpRequest.Builder request) throws IOException, InterruptedException {
+		HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+		if (response.statusCode() != 200)
+			throw new IllegalStateException("Unexpected status %d".formatted(response.statusCode()));
+
+		return response.body();
+	}
+}
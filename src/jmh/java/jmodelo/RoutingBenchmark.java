@@ -0,0 +1,64 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.Headers;
+
+// Resolves a request path to a controller and an action, as MyHttpHandler does before invoking it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+	private MyHttpHandler handler;
+	private BenchmarkExchange exchange;
+
+	@Setup
+	public void setup() throws IOException {
+		CompressionPolicy compressionPolicy = new CompressionPolicy();
+		handler = new MyHttpHandler(null, "jmodelo.benchmarks", null, new ConnectionStats(), new RequestStats(), null,
+				new StaticFiles("www", compressionPolicy), compressionPolicy, new ViewEngine(1), new MemorySessionStore(),
+				new UploadPolicy(), new OutputCacheStore(compressionPolicy));
+
+		exchange = new BenchmarkExchange("/pipeline/hello/42?name=bench&page=3", new Headers());
+	}
+
+	@Benchmark
+	public PathInfo pathInfo() throws ClassNotFoundException {
+		return handler.getPathInfo(exchange);
+	}
+
+	@Benchmark
+	public Route route() throws ClassNotFoundException, NoSuchMethodException {
+		return handler.getRoute(exchange.getRequestMethod(), handler.getPathInfo(exchange));
+	}
+}
@@ -0,0 +1,135 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.Headers;
+
+// Parses the cookies of a request and loads, changes and stores its session with the memory and cookie stores.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionBenchmark {
+	private MemorySessionStore memoryStore;
+	private CookieSessionStore signedStore;
+	private CookieSessionStore encryptedStore;
+
+	private Headers memoryHeaders;
+	private Headers signedHeaders;
+	private Headers encryptedHeaders;
+	private int counter;
+
+	@Setup
+	public void setup() throws IOException {
+		byte[] key = "jmodelo-benchmark-session-key-0123456789".getBytes(StandardCharsets.UTF_8);
+
+		memoryStore = new MemorySessionStore();
+		signedStore = new CookieSessionStore(List.of(key), false);
+		encryptedStore = new CookieSessionStore(List.of(key), true);
+
+		memoryHeaders = requestHeaders(memoryStore, MemorySessionStore.SESSION_COOKIE);
+		signedHeaders = requestHeaders(signedStore, CookieSessionStore.SESSION_COOKIE);
+		encryptedHeaders = requestHeaders(encryptedStore, CookieSessionStore.SESSION_COOKIE);
+	}
+
+	@TearDown
+	public void tearDown() {
+		memoryStore.close();
+	}
+
+	@Benchmark
+	public Cookies parseCookies() {
+		return new Cookies(new BenchmarkExchange("/", memoryHeaders));
+	}
+
+	@Benchmark
+	public String memoryLoad() {
+		return load(memoryStore, memoryHeaders);
+	}
+
+	@Benchmark
+	public Session memoryLoadStore() throws IOException {
+		return loadStore(memoryStore, memoryHeaders);
+	}
+
+	@Benchmark
+	public String signedCookieLoad() {
+		return load(signedStore, signedHeaders);
+	}
+
+	@Benchmark
+	public Session signedCookieLoadStore() throws IOException {
+		return loadStore(signedStore, signedHeaders);
+	}
+
+	@Benchmark
+	public String encryptedCookieLoad() {
+		return load(encryptedStore, encryptedHeaders);
+	}
+
+	@Benchmark
+	public Session encryptedCookieLoadStore() throws IOException {
+		return loadStore(encryptedStore, encryptedHeaders);
+	}
+
+	private String load(SessionStore store, Headers headers) {
+		Session session = new Session(new Cookies(new BenchmarkExchange("/", headers)), store);
+		return session.getValue("user");
+	}
+
+	private Session loadStore(SessionStore store, Headers headers) throws IOException {
+		Session session = new Session(new Cookies(new BenchmarkExchange("/", headers)), store);
+		session.addValue("counter", Integer.toString(counter++));
+		session.storeSession();
+
+		return session;
+	}
+
+	// Creates a session in the store and returns request headers that carry its cookie among a few others.
+	private static Headers requestHeaders(SessionStore store, String cookieName) throws IOException {
+		Cookies cookies = new Cookies(new BenchmarkExchange("/", new Headers()));
+		Session session = new Session(cookies, store);
+		session.addValue("user", "alice");
+		session.addValue("role", "admin");
+		session.addValue("counter", "0");
+		session.storeSession();
+
+		Headers headers = new Headers();
+		headers.add("Cookie", "theme=dark; lang=en; %s=%s; _ga=GA1.2.1234567890.1690000000"
+				.formatted(cookieName, cookies.getCookie(cookieName)));
+
+		return headers;
+	}
+}
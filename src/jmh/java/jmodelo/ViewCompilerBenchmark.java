@@ -0,0 +1,91 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewCompilerBenchmark {
+
+	@Param({"10", "100", "1000"})
+	public int blocks;
+
+	private String template;
+
+	@Setup
+	public void setup() {
+		StringBuilder sb = new StringBuilder("<html>\n<body>\n");
+		for (int i = 0; i < blocks; i++) {
+			sb.append("<div class='row'>\n\t<span>Row ").append(i).append("</span>\n");
+			sb.append("\t<% if (_model.rows[").append(i).append("]) { %><b><% _s(_model.rows[").append(i).append("]); %></b><% } %>\n");
+			sb.append("</div>\n");
+		}
+		template = sb.append("</body>\n</html>\n").toString();
+	}
+
+	@Benchmark
+	public String regex() {
+		Pattern pattern = Pattern.compile("<%([\\s\\S]*?)%>");
+		String contents = template;
+		Matcher matcher = pattern.matcher(contents);
+
+		List<String> scriptParts = new ArrayList<>();
+		while (matcher.find()) {
+			String code = matcher.group(1);
+			contents = contents.replaceFirst(Pattern.quote("<%" + code + "%>"), "<%%>");
+			scriptParts.add(code);
+		}
+
+		String[] htmlParts = scriptParts.size() > 0 ? contents.split("<%%>") : new String[] {contents};
+
+		for (String htmlPart: htmlParts) {
+			contents = contents.replaceFirst(Pattern.quote(htmlPart), "_contents += '%s';"
+					.formatted(htmlPart.replace("\r\n", "\n").replace("\n", "\\\\n").replace("'", "\\\\'")));
+		}
+
+		for (String scriptPart: scriptParts) {
+			contents = contents.replaceFirst(Pattern.quote("<%%>"), scriptPart);
+		}
+
+		return contents;
+	}
+
+	@Benchmark
+	public String compiler() {
+		return ViewCompiler.compile(template);
+	}
+}
@@ -0,0 +1,95 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jmodelo.benchmarks.BenchmarkViews;
+
+// Renders a page inside a layout with cached templates, and loads and compiles the page template from disk.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewRenderBenchmark {
+
+	@Param({"10", "100"})
+	public int rows;
+
+	private Path viewsFolder;
+	private String layoutPath;
+	private String pagePath;
+	private ViewEngine viewEngine;
+	private Object model;
+
+	@Setup
+	public void setup() throws IOException {
+		viewsFolder = BenchmarkViews.create();
+		layoutPath = viewsFolder.resolve("layout.html").toString();
+		pagePath = viewsFolder.resolve("page.html").toString();
+
+		viewEngine = new ViewEngine(1);
+		model = BenchmarkViews.model(rows);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		BenchmarkViews.delete(viewsFolder);
+	}
+
+	@Benchmark
+	public String render() throws IOException, ScriptException {
+		Map<String, Object> viewData = new HashMap<>();
+		viewData.put("title", "Rows");
+
+		return new ViewInterpreter(viewEngine, null, "Pipeline", viewData, null, null).parseView(pagePath, layoutPath, model);
+	}
+
+	// Reads the template, translates it to JavaScript and compiles that with Nashorn, as on a template cache miss.
+	@Benchmark
+	public CompiledScript compile() throws IOException, ScriptException {
+		viewEngine.invalidateAll();
+
+		ViewRuntime runtime = viewEngine.acquire();
+		try {
+			return runtime.compile(viewEngine.getTemplate(pagePath));
+		} finally {
+			viewEngine.release(runtime);
+		}
+	}
+}
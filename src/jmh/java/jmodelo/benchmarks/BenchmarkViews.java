@@ -0,0 +1,62 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// A layout and a page with a loop and escaped output, written to a temp folder and referenced by absolute path so
+// the benchmarks do not depend on the working directory.
+public class BenchmarkViews {
+	private static final String LAYOUT = "<!DOCTYPE html>\n<html>\n<head><title><% _s(_viewData.title); %></title></head>\n"
+			+ "<body>\n<% _partial(_partialView, _model); %>\n</body>\n</html>\n";
+
+	private static final String PAGE = "<table>\n<% for (var i = 0; i < _model.rows.length; i++) { var row = _model.rows[i]; %>\n"
+			+ "\t<tr><td><% _s(row.id); %></td><td><% _s(row.name); %></td><td><% _s(row.price); %></td></tr>\n"
+			+ "<% } %>\n</table>\n<p>Total: <% _s(_model.rows.length); %></p>\n";
+
+	private BenchmarkViews() {}
+
+	public static Path create() throws IOException {
+		Path folder = Files.createTempDirectory("jmodelo-views");
+		Files.writeString(folder.resolve("layout.html"), LAYOUT, StandardCharsets.UTF_8);
+		Files.writeString(folder.resolve("page.html"), PAGE, StandardCharsets.UTF_8);
+
+		return folder;
+	}
+
+	public static void delete(Path folder) throws IOException {
+		try (Stream<Path> files = Files.list(folder)) {
+			for (Path file: files.toList())
+				Files.delete(file);
+		}
+		Files.delete(folder);
+	}
+
+	public static Map<String, Object> model(int rows) {
+		List<Map<String, Object>> items = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++)
+			items.add(Map.of("id", i, "name", "Product <%d> & co".formatted(i), "price", 9.99 + i));
+
+		return Map.of("rows", items);
+	}
+}
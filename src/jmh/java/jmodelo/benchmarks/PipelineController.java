@@ -0,0 +1,60 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.script.ScriptException;
+
+import jmodelo.ActionResult;
+import jmodelo.Controller;
+import jmodelo.annotations.OutputCache;
+import jmodelo.annotations.UrlArg;
+
+// Actions requested by RequestPipelineBenchmark and looked up by RoutingBenchmark.
+public class PipelineController extends Controller {
+	public static volatile Path viewsFolder;
+	public static volatile String largeText = "";
+
+	public ActionResult hello(@UrlArg(0) int id, String name) {
+		return html("hello %s %d".formatted(name, id));
+	}
+
+	public ActionResult counter() {
+		String value = getSession().getValue("counter");
+		int counter = value != null ? Integer.parseInt(value) + 1 : 0;
+		getSession().addValue("counter", Integer.toString(counter));
+
+		return html(Integer.toString(counter));
+	}
+
+	public ActionResult page(int rows) throws IOException, ScriptException {
+		getViewData().put("title", "Rows");
+
+		return view(viewsFolder.resolve("page.html").toString(), viewsFolder.resolve("layout.html").toString(),
+				BenchmarkViews.model(rows));
+	}
+
+	@OutputCache(duration = 3600, varyByParam = "rows")
+	public ActionResult cachedPage(int rows) throws IOException, ScriptException {
+		return page(rows);
+	}
+
+	public ActionResult large() {
+		return html(largeText);
+	}
+}
@@ -0,0 +1,301 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import jmodelo.LatencyHistogram;
+
+// Closed-loop load generator: every worker is a virtual thread that sends one request, waits for the response and sends
+// the next, with no think time. Unless --url is given, ReferenceApp is started in a separate JVM first, so the allocation
+// rate reported for the server does not include the load generator.
+public class LoadTest {
+	private static final Gson GSON = new Gson();
+	private static final String BOUNDARY = "----jmodeloLoadTestBoundary";
+
+	private Options options;
+	private String url;
+	private HttpClient client;
+	private byte[] uploadBody;
+	private List<Endpoint> endpoints;
+	private int totalWeight;
+	private volatile Results results;
+	private volatile boolean stopped;
+
+	private record Options(String url, int port, String appDir, int concurrency, long warmupSeconds, long durationSeconds,
+			String scenario) {}
+
+	private record Endpoint(String name, int weight, Function<Worker, HttpRequest> request) {}
+
+	private record ServerStats(long allocatedBytes, long gcCount, long gcMillis) {}
+
+	// Each worker keeps its own session cookie, like a browser would.
+	private static class Worker {
+		private final Random random = ThreadLocalRandom.current();
+		private String sessionCookie;
+	}
+
+	private static class Results {
+		private final Map<String, LatencyHistogram> endpoints = new LinkedHashMap<>();
+		private final LatencyHistogram all = new LatencyHistogram();
+		private final LongAdder errors = new LongAdder();
+		private final long start = System.nanoTime();
+
+		Results(List<Endpoint> endpoints) {
+			endpoints.forEach(x -> this.endpoints.put(x.name(), new LatencyHistogram()));
+		}
+	}
+
+	public LoadTest(Options options, String url) {
+		this.options = options;
+		this.url = url;
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+				.executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+		this.uploadBody = createUploadBody(32 * 1024);
+		this.endpoints = createEndpoints(options.scenario());
+		this.totalWeight = endpoints.stream().mapToInt(Endpoint::weight).sum();
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = parseOptions(args);
+
+		Process server = options.url() == null ? startServer(options) : null;
+		String url = options.url() != null ? options.url() : "http://127.0.0.1:%d".formatted(options.port());
+		try {
+			new LoadTest(options, url).run();
+		} finally {
+			if (server != null) server.destroy();
+		}
+	}
+
+	public void run() throws Exception {
+		waitForServer();
+
+		System.out.println("Scenario %s, %d workers, %ds warm-up, %ds measurement".formatted(options.scenario(),
+				options.concurrency(), options.warmupSeconds(), options.durationSeconds()));
+
+		try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < options.concurrency(); i++)
+				workers.submit(this::work);
+
+			Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmupSeconds()));
+
+			ServerStats before = readServerStats();
+			Results measured = results = new Results(endpoints);
+			Thread.sleep(TimeUnit.SECONDS.toMillis(options.durationSeconds()));
+			results = null;
+			long elapsed = System.nanoTime() - measured.start;
+			ServerStats after = readServerStats();
+
+			stopped = true;
+			report(measured, elapsed, before, after);
+		}
+	}
+
+	private void work() {
+		Worker worker = new Worker();
+		while (!stopped) {
+			Endpoint endpoint = pick(worker.random);
+			HttpRequest request = endpoint.request().apply(worker);
+
+			long start = System.nanoTime();
+			boolean failed;
+			try {
+				HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+				failed = response.statusCode() != 200;
+				response.headers().firstValue("Set-Cookie").ifPresent(x -> worker.sessionCookie = x.split(";")[0]);
+			} catch (IOException e) {
+				failed = true;
+			} catch (InterruptedException e) {
+				return;
+			}
+			long nanos = System.nanoTime() - start;
+
+			Results results = this.results;
+			if (results == null) continue;
+
+			results.endpoints.get(endpoint.name()).record(nanos);
+			results.all.record(nanos);
+			if (failed) results.errors.increment();
+		}
+	}
+
+	private Endpoint pick(Random random) {
+		int value = random.nextInt(totalWeight);
+		for (Endpoint endpoint: endpoints) {
+			value -= endpoint.weight();
+			if (value < 0) return endpoint;
+		}
+
+		return endpoints.get(endpoints.size() - 1);
+	}
+
+	private List<Endpoint> createEndpoints(String scenario) {
+		List<Endpoint> all = List.of(
+				new Endpoint("home", 30, x -> get(url + "/?page=" + x.random.nextInt(10), x)),
+				new Endpoint("product", 30, x -> get(url + "/products/show/" + (1 + x.random.nextInt(ReferenceApp.PRODUCTS)), x)),
+				new Endpoint("search", 10, x -> get(url + "/products/search?q=" + (1 + x.random.nextInt(99)), x)),
+				new Endpoint("cartAdd", 8, x -> get(url + "/cart/add/" + (1 + x.random.nextInt(ReferenceApp.PRODUCTS)), x)),
+				new Endpoint("cart", 5, x -> get(url + "/cart", x)),
+				new Endpoint("upload", 2, x -> HttpRequest.newBuilder(URI.create(url + "/upload"))
+						.header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+						.POST(HttpRequest.BodyPublishers.ofByteArray(uploadBody)).build()),
+				new Endpoint("static", 15, x -> HttpRequest.newBuilder(URI.create(url + "/site.css"))
+						.header("Accept-Encoding", "gzip").build()));
+
+		if (scenario.equals("mix")) return all;
+
+		List<Endpoint> selected = all.stream().filter(x -> x.name().equals(scenario)).toList();
+		if (selected.isEmpty())
+			throw new IllegalArgumentException("Unknown scenario %s, use mix or one of %s"
+					.formatted(scenario, all.stream().map(Endpoint::name).toList()));
+
+		return selected;
+	}
+
+	private static HttpRequest get(String url, Worker worker) {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url)).header("Accept-Encoding", "gzip");
+		if (worker.sessionCookie != null)
+			request.header("Cookie", worker.sessionCookie);
+
+		return request.build();
+	}
+
+	private void report(Results results, long elapsedNanos, ServerStats before, ServerStats after) {
+		double seconds = elapsedNanos / 1e9;
+		long requests = results.all.getCount();
+
+		System.out.println();
+		System.out.println("Requests   %d (%.1f/s), %d errors".formatted(requests, requests / seconds, results.errors.sum()));
+		System.out.println("%-10s %9s %9s %9s %9s %9s %9s".formatted("Latency", "count", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms"));
+		System.out.println(latencyLine("all", results.all));
+		results.endpoints.forEach((name, histogram) -> {
+			if (histogram.getCount() > 0) System.out.println(latencyLine(name, histogram));
+		});
+
+		if (before != null && after != null) {
+			double allocated = after.allocatedBytes() - before.allocatedBytes();
+			System.out.println("Server     %.1f MB/s allocated, %.1f KB per request, %d GCs, %d ms in GC".formatted(
+					allocated / seconds / (1024 * 1024), requests > 0 ? allocated / requests / 1024 : 0,
+					after.gcCount() - before.gcCount(), after.gcMillis() - before.gcMillis()));
+		}
+	}
+
+	private static String latencyLine(String name, LatencyHistogram histogram) {
+		return "%-10s %9d %9.2f %9.2f %9.2f %9.2f %9.2f".formatted(name, histogram.getCount(), histogram.getPercentileMillis(50),
+				histogram.getPercentileMillis(90), histogram.getPercentileMillis(99), histogram.getPercentileMillis(99.9),
+				histogram.getMaxNanos() / 1e6);
+	}
+
+	private ServerStats readServerStats() {
+		try {
+			HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url + "/stats")).build(),
+					HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() != 200) return null;
+
+			JsonObject stats = GSON.fromJson(response.body(), JsonObject.class);
+			return new ServerStats(stats.get("allocatedBytes").getAsLong(), stats.get("gcCount").getAsLong(),
+					stats.get("gcMillis").getAsLong());
+		} catch (IOException | InterruptedException | RuntimeException e) {
+			System.err.println("Could not read the server stats: %s".formatted(e));
+			return null;
+		}
+	}
+
+	private void waitForServer() throws Exception {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+		while (true) {
+			try {
+				client.send(HttpRequest.newBuilder(URI.create(url + "/stats")).build(), HttpResponse.BodyHandlers.discarding());
+				return;
+			} catch (ConnectException e) {
+				if (System.nanoTime() > deadline) throw e;
+				Thread.sleep(200);
+			}
+		}
+	}
+
+	private static Process startServer(Options options) throws IOException {
+		File appDir = new File(options.appDir());
+		if (!new File(appDir, "views").isDirectory())
+			throw new IllegalArgumentException("%s does not contain the views of the reference app, use --app-dir".formatted(appDir));
+
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		return new ProcessBuilder(java, "-cp", new File(System.getProperty("java.class.path")).getAbsolutePath(),
+				ReferenceApp.class.getName(), Integer.toString(options.port()))
+				.directory(appDir).inheritIO().start();
+	}
+
+	private static byte[] createUploadBody(int fileSize) {
+		byte[] file = new byte[fileSize];
+		new Random(42).nextBytes(file);
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.writeBytes(("--%s\r\nContent-Disposition: form-data; name=\"title\"\r\n\r\nload test\r\n".formatted(BOUNDARY))
+				.getBytes(StandardCharsets.ISO_8859_1));
+		output.writeBytes(("--%s\r\nContent-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n"
+				+ "Content-Type: application/octet-stream\r\n\r\n").formatted(BOUNDARY).getBytes(StandardCharsets.ISO_8859_1));
+		output.writeBytes(file);
+		output.writeBytes("\r\n--%s--\r\n".formatted(BOUNDARY).getBytes(StandardCharsets.ISO_8859_1));
+
+		return output.toByteArray();
+	}
+
+	private static Options parseOptions(String[] args) {
+		Map<String, String> values = new LinkedHashMap<>(Map.of("--port", "18181", "--app-dir", "src/loadtest/app",
+				"--concurrency", "64", "--warmup", "10", "--duration", "30", "--scenario", "mix"));
+
+		List<String> unknown = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--url") || values.containsKey(args[i])) {
+				if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for %s".formatted(args[i]));
+				values.put(args[i], args[++i]);
+			} else {
+				unknown.add(args[i]);
+			}
+		}
+
+		if (!unknown.isEmpty())
+			throw new IllegalArgumentException("Unknown options %s, expected --url, %s".formatted(unknown, values.keySet()));
+
+		return new Options(values.get("--url"), Integer.parseInt(values.get("--port")), values.get("--app-dir"),
+				Integer.parseInt(values.get("--concurrency")), Long.parseLong(values.get("--warmup")),
+				Long.parseLong(values.get("--duration")), values.get("--scenario"));
+	}
+}
@@ -0,0 +1,74 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo.loadtest;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Queries used by the reference app controllers. Rows are returned as maps so views and json can use them directly.
+public class Products {
+
+	private Products() {}
+
+	public static List<Map<String, Object>> list(Connection connection, int offset, int limit) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("select * from product order by id limit ? offset ?")) {
+			statement.setInt(1, limit);
+			statement.setInt(2, offset);
+
+			return read(statement);
+		}
+	}
+
+	public static Map<String, Object> find(Connection connection, int id) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("select * from product where id = ?")) {
+			statement.setInt(1, id);
+
+			List<Map<String, Object>> products = read(statement);
+			return products.isEmpty() ? null : products.get(0);
+		}
+	}
+
+	public static List<Map<String, Object>> search(Connection connection, String query, int limit) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("select * from product where name like ? order by id limit ?")) {
+			statement.setString(1, "%" + query + "%");
+			statement.setInt(2, limit);
+
+			return read(statement);
+		}
+	}
+
+	private static List<Map<String, Object>> read(PreparedStatement statement) throws SQLException {
+		List<Map<String, Object>> products = new ArrayList<>();
+		try (ResultSet rs = statement.executeQuery()) {
+			while (rs.next()) {
+				Map<String, Object> product = new LinkedHashMap<>();
+				product.put("id", rs.getInt("id"));
+				product.put("name", rs.getString("name"));
+				product.put("description", rs.getString("description"));
+				product.put("price", rs.getBigDecimal("price").toPlainString());
+				products.add(product);
+			}
+		}
+
+		return products;
+	}
+}
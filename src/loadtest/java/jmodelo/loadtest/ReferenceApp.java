@@ -0,0 +1,68 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo.loadtest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.zaxxer.hikari.HikariConfig;
+
+import jmodelo.MVC;
+import jmodelo.MemorySessionStore;
+
+// A small shop used as the target of LoadTest: a layout with partials, database queries through the pool, a session
+// cart, uploads and static files. Must be started from src/loadtest/app, where its views and www folders are.
+public class ReferenceApp {
+	public static final int PRODUCTS = 1000;
+
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 18181;
+
+		HikariConfig dbConfig = new HikariConfig();
+		dbConfig.setJdbcUrl("jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+		dbConfig.setMaximumPoolSize(Math.max(10, Runtime.getRuntime().availableProcessors() * 2));
+		createDatabase(dbConfig.getJdbcUrl());
+
+		MVC mvc = new MVC("jmodelo.loadtest.controllers", false, null, dbConfig);
+		mvc.setSessionStore(new MemorySessionStore());
+		mvc.setMetricsPath("/metrics");
+		mvc.setTcpNoDelay(true);
+		mvc.startHttp(port);
+	}
+
+	private static void createDatabase(String jdbcUrl) throws SQLException {
+		try (Connection connection = DriverManager.getConnection(jdbcUrl)) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("create table product (id int primary key, name varchar(100), "
+						+ "description varchar(1000), price decimal(10, 2))");
+			}
+
+			try (PreparedStatement insert = connection.prepareStatement("insert into product values (?, ?, ?, ?)")) {
+				for (int i = 1; i <= PRODUCTS; i++) {
+					insert.setInt(1, i);
+					insert.setString(2, "Product %d".formatted(i));
+					insert.setString(3, "A description of product %d, with <markup> & characters that need escaping. ".formatted(i).repeat(4));
+					insert.setDouble(4, 1 + (i * 7919 % 10000) / 100.0);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+		}
+	}
+}
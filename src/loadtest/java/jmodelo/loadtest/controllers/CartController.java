@@ -0,0 +1,54 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo.loadtest.controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import jmodelo.ActionResult;
+import jmodelo.Controller;
+import jmodelo.annotations.UrlArg;
+import jmodelo.loadtest.Products;
+
+// Keeps the ids of the products in the cart as a comma separated session value, capped at 20 entries.
+public class CartController extends Controller {
+	private static final int MAX_ITEMS = 20;
+
+	public ActionResult index() throws Exception {
+		List<Map<String, Object>> products = new ArrayList<>();
+		for (String id: items())
+			products.add(Products.find(getDatabaseConnection(), Integer.parseInt(id)));
+
+		getViewData().put("title", "Cart");
+		return view("index.html", products);
+	}
+
+	public ActionResult add(@UrlArg(0) int id) {
+		List<String> items = items();
+		items.add(Integer.toString(id));
+		if (items.size() > MAX_ITEMS)
+			items.remove(0);
+
+		getSession().addValue("cart", String.join(",", items));
+		return json(Map.of("items", items.size()));
+	}
+
+	private List<String> items() {
+		String cart = getSession().getValue("cart");
+		return cart != null && !cart.isEmpty() ? new ArrayList<>(List.of(cart.split(","))) : new ArrayList<>();
+	}
+}
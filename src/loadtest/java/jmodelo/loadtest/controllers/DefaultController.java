@@ -0,0 +1,30 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo.loadtest.controllers;
+
+import jmodelo.ActionResult;
+import jmodelo.Controller;
+import jmodelo.loadtest.Products;
+
+public class DefaultController extends Controller {
+
+	public ActionResult index(String page) throws Exception {
+		int offset = page != null && page.matches("\\d{1,4}") ? Integer.parseInt(page) * 20 : 0;
+		getViewData().put("title", "Products");
+
+		return view("index.html", Products.list(getDatabaseConnection(), offset, 20));
+	}
+}
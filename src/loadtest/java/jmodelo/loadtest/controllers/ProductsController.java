@@ -0,0 +1,42 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo.loadtest.controllers;
+
+import java.util.Map;
+
+import jmodelo.ActionResult;
+import jmodelo.Controller;
+import jmodelo.annotations.OutputCache;
+import jmodelo.annotations.UrlArg;
+import jmodelo.loadtest.Products;
+
+public class ProductsController extends Controller {
+
+	// Products do not change while the load test runs, so their pages are served from the output cache.
+	@OutputCache(duration = 10, staleWhileRevalidate = 60)
+	public ActionResult show(@UrlArg(0) int id) throws Exception {
+		Map<String, Object> product = Products.find(getDatabaseConnection(), id);
+		if (product == null)
+			throw new NoSuchMethodException("product %d".formatted(id));
+
+		getViewData().put("title", product.get("name"));
+		return view("show.html", product);
+	}
+
+	public ActionResult search(String q) throws Exception {
+		return json(Products.search(getDatabaseConnection(), q != null ? q : "", 10));
+	}
+}
@@ -0,0 +1,41 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo.loadtest.controllers;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import com.sun.management.ThreadMXBean;
+
+import jmodelo.ActionResult;
+import jmodelo.Controller;
+
+// Read by LoadTest before and after the measurement to work out the allocation rate and GC activity of the server.
+public class StatsController extends Controller {
+
+	public ActionResult index() {
+		long gcCount = 0, gcMillis = 0;
+		for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcCount += Math.max(0, gc.getCollectionCount());
+			gcMillis += Math.max(0, gc.getCollectionTime());
+		}
+
+		ThreadMXBean threads = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+		return json(Map.of("allocatedBytes", threads.getTotalThreadAllocatedBytes(), "gcCount", gcCount, "gcMillis", gcMillis,
+				"nanoTime", System.nanoTime()));
+	}
+}
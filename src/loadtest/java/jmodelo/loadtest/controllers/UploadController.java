@@ -0,0 +1,47 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo.loadtest.controllers;
+
+import java.io.InputStream;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import jmodelo.ActionResult;
+import jmodelo.Controller;
+import jmodelo.PostData;
+import jmodelo.PostFile;
+import jmodelo.annotations.HttpPost;
+
+public class UploadController extends Controller {
+
+	@HttpPost
+	public ActionResult index(PostData data) throws Exception {
+		PostFile file = data.files().get("file");
+		if (file == null)
+			throw new IllegalArgumentException("No file was uploaded");
+
+		CRC32 crc = new CRC32();
+		try (InputStream input = file.openStream()) {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = input.read(buffer)) != -1)
+				crc.update(buffer, 0, read);
+		}
+
+		return json(Map.of("title", data.fields().getOrDefault("title", ""), "name", file.fileName(),
+				"size", file.size(), "crc", Long.toHexString(crc.getValue())));
+	}
+}
@@ -0,0 +1,230 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import jmodelo.annotations.UrlArg;
+
+// Calls the constructor and the action through classes generated for them with LambdaMetafactory, so a request costs
+// an interface call with the bound arguments, without an argument array. Controllers that are not public and actions
+// with more than six parameters are called through a spreading method handle instead.
+public class ActionInvoker {
+	private static final Class<?>[] ACTION_TYPES = new Class<?>[] {Action0.class, Action1.class, Action2.class,
+			Action3.class, Action4.class, Action5.class, Action6.class};
+
+	private final Factory constructor;
+	private final Object action;
+	private final MethodHandle spreadAction;
+	private final ParameterBinder[] binders;
+
+	public ActionInvoker(Class<?> controllerClass, Method method) throws IllegalAccessException {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		boolean accessible = isAccessible(controllerClass);
+
+		Constructor<?> defaultConstructor = getDefaultConstructor(controllerClass);
+		if (defaultConstructor != null) {
+			defaultConstructor.setAccessible(true);
+			MethodHandle handle = lookup.unreflectConstructor(defaultConstructor);
+			Factory factory = accessible && Modifier.isPublic(defaultConstructor.getModifiers())
+					? (Factory)generate(lookup, Factory.class, "create", handle) : null;
+			this.constructor = factory != null ? factory : createFactory(handle.asType(MethodType.methodType(Object.class)));
+		} else
+			this.constructor = null;
+
+		method.setAccessible(true);
+		MethodHandle handle = lookup.unreflect(method);
+		int parameterCount = method.getParameterCount();
+		this.action = accessible && parameterCount < ACTION_TYPES.length
+				? generate(lookup, ACTION_TYPES[parameterCount], "invoke", handle) : null;
+		this.spreadAction = action == null ? handle.asSpreader(Object[].class, parameterCount)
+				.asType(MethodType.methodType(Object.class, Object.class, Object[].class)) : null;
+
+		Parameter[] parameters = method.getParameters();
+		this.binders = new ParameterBinder[parameters.length];
+		for (int i = 0; i < parameters.length; i++)
+			binders[i] = createBinder(parameters[i]);
+	}
+
+	public Controller newController() throws Exception {
+		if (constructor == null)
+			throw new InstantiationException("No default constructor");
+
+		try {
+			return (Controller)constructor.create();
+		} catch (Exception e) {
+			throw e;
+		} catch (Throwable e) {
+			// errors are wrapped like Method.invoke does, so that the request still gets an error page
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	public ActionResult invoke(Controller controller, Map<String, String> params, List<String> urlArgs, PostData postData)
+			throws Exception {
+		ParameterBinder[] b = binders;
+		try {
+			return (ActionResult)switch (action != null ? b.length : -1) {
+			case 0 -> ((Action0)action).invoke(controller);
+			case 1 -> ((Action1)action).invoke(controller, b[0].bind(params, urlArgs, postData));
+			case 2 -> ((Action2)action).invoke(controller, b[0].bind(params, urlArgs, postData),
+					b[1].bind(params, urlArgs, postData));
+			case 3 -> ((Action3)action).invoke(controller, b[0].bind(params, urlArgs, postData),
+					b[1].bind(params, urlArgs, postData), b[2].bind(params, urlArgs, postData));
+			case 4 -> ((Action4)action).invoke(controller, b[0].bind(params, urlArgs, postData),
+					b[1].bind(params, urlArgs, postData), b[2].bind(params, urlArgs, postData),
+					b[3].bind(params, urlArgs, postData));
+			case 5 -> ((Action5)action).invoke(controller, b[0].bind(params, urlArgs, postData),
+					b[1].bind(params, urlArgs, postData), b[2].bind(params, urlArgs, postData),
+					b[3].bind(params, urlArgs, postData), b[4].bind(params, urlArgs, postData));
+			case 6 -> ((Action6)action).invoke(controller, b[0].bind(params, urlArgs, postData),
+					b[1].bind(params, urlArgs, postData), b[2].bind(params, urlArgs, postData),
+					b[3].bind(params, urlArgs, postData), b[4].bind(params, urlArgs, postData),
+					b[5].bind(params, urlArgs, postData));
+			default -> {
+				Object[] args = new Object[b.length];
+				for (int i = 0; i < b.length; i++)
+					args[i] = b[i].bind(params, urlArgs, postData);
+
+				yield (Object)spreadAction.invokeExact((Object)controller, args);
+			}
+			};
+		} catch (Exception e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new InvocationTargetException(e);
+		}
+	}
+
+	// The generated class lives next to this one, so it can only call classes that are accessible from here. Primitive
+	// parameters are unboxed by it, and null for a primitive fails with a NullPointerException as with a method handle.
+	private static Object generate(MethodHandles.Lookup lookup, Class<?> type, String name, MethodHandle target) {
+		MethodType targetType = target.type().wrap();
+		try {
+			return LambdaMetafactory.metafactory(lookup, name, MethodType.methodType(type),
+					MethodType.genericMethodType(targetType.parameterCount()), target, targetType).getTarget().invoke();
+		} catch (LambdaConversionException e) {
+			return null;
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static Factory createFactory(MethodHandle constructor) {
+		return () -> (Object)constructor.invokeExact();
+	}
+
+	private static boolean isAccessible(Class<?> controllerClass) {
+		try {
+			MethodHandles.publicLookup().accessClass(controllerClass);
+			return true;
+		} catch (IllegalAccessException e) {
+			return false;
+		}
+	}
+
+	private static Constructor<?> getDefaultConstructor(Class<?> controllerClass) {
+		try {
+			return controllerClass.getDeclaredConstructor();
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static ParameterBinder createBinder(Parameter param) {
+		Class<?> type = param.getType();
+		if (type == PostData.class)
+			return (params, urlArgs, postData) -> postData;
+		if (type == GetParams.class)
+			return (params, urlArgs, postData) -> new GetParams(params);
+
+		Function<String, Object> parser = type == int.class ? Integer::parseInt
+				: type == double.class ? Double::parseDouble
+				: type == String.class ? x -> x : x -> null;
+
+		String name = param.getName();
+		UrlArg urlArgAnnotation = param.getAnnotation(UrlArg.class);
+		if (urlArgAnnotation != null) {
+			int index = urlArgAnnotation.value();
+			return (params, urlArgs, postData) -> {
+				String paramValue = index < urlArgs.size() ? urlArgs.get(index) : params.get(name);
+				return paramValue != null ? parser.apply(paramValue) : null;
+			};
+		}
+
+		return (params, urlArgs, postData) -> {
+			String paramValue = params.get(name);
+			return paramValue != null ? parser.apply(paramValue) : null;
+		};
+	}
+
+	@FunctionalInterface
+	private interface Factory {
+		Object create() throws Throwable;
+	}
+
+	@FunctionalInterface
+	private interface Action0 {
+		Object invoke(Object controller);
+	}
+
+	@FunctionalInterface
+	private interface Action1 {
+		Object invoke(Object controller, Object a0);
+	}
+
+	@FunctionalInterface
+	private interface Action2 {
+		Object invoke(Object controller, Object a0, Object a1);
+	}
+
+	@FunctionalInterface
+	private interface Action3 {
+		Object invoke(Object controller, Object a0, Object a1, Object a2);
+	}
+
+	@FunctionalInterface
+	private interface Action4 {
+		Object invoke(Object controller, Object a0, Object a1, Object a2, Object a3);
+	}
+
+	@FunctionalInterface
+	private interface Action5 {
+		Object invoke(Object controller, Object a0, Object a1, Object a2, Object a3, Object a4);
+	}
+
+	@FunctionalInterface
+	private interface Action6 {
+		Object invoke(Object controller, Object a0, Object a1, Object a2, Object a3, Object a4, Object a5);
+	}
+
+	@FunctionalInterface
+	private interface ParameterBinder {
+		Object bind(Map<String, String> params, List<String> urlArgs, PostData postData);
+	}
+}
@@ -15,6 +15,22 @@
  */
 package jmodelo;
 
-public record ActionResult(byte[] contentBuffer, String mimeType, int responseCode) {
+import java.util.Map;
 
+public record ActionResult(byte[] contentBuffer, String mimeType, int responseCode, Map<String, String> headers,
+		byte[] gzipBuffer, BodyWriter bodyWriter, long contentLength) {
+
+	public ActionResult(byte[] contentBuffer, String mimeType, int responseCode) {
+		this(contentBuffer, mimeType, responseCode, Map.of(), null);
+	}
+
+	public ActionResult(byte[] contentBuffer, String mimeType, int responseCode, Map<String, String> headers,
+			byte[] gzipBuffer) {
+		this(contentBuffer, mimeType, responseCode, headers, gzipBuffer, null, contentBuffer.length);
+	}
+
+	public ActionResult(BodyWriter bodyWriter, long contentLength, String mimeType, int responseCode,
+			Map<String, String> headers) {
+		this(null, mimeType, responseCode, headers, null, bodyWriter, contentLength);
+	}
 }
@@ -0,0 +1,58 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+public record ByteRange(long start, long end) {
+	public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+	public long length() {
+		return end - start + 1;
+	}
+
+	public String contentRange(long size) {
+		return "bytes %d-%d/%d".formatted(start, end, size);
+	}
+
+	public static ByteRange parse(String header, long size) {
+		if (header == null || !header.startsWith("bytes=") || header.contains(","))
+			return null;
+
+		String spec = header.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash == -1) return null;
+
+		try {
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+
+			if (first.isEmpty()) {
+				long suffixLength = Long.parseLong(last);
+				if (suffixLength <= 0 || size == 0) return UNSATISFIABLE;
+
+				return new ByteRange(Math.max(0, size - suffixLength), size - 1);
+			}
+
+			long start = Long.parseLong(first);
+			long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+			if (start >= size) return UNSATISFIABLE;
+			if (end < start) return null;
+
+			return new ByteRange(start, end);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
@@ -15,21 +15,66 @@
  */
 package jmodelo;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.function.ToLongFunction;
 
 public class Cache<K, V> extends LinkedHashMap<K, V>{
 	
 	private static final long serialVersionUID = 1L;
 	private final int MAX_SIZE;
+	private final long MAX_WEIGHT;
+	private final transient ToLongFunction<V> weigher;
+	private long weight;
 	
     public Cache(int size) {
-        super(size, 0.75f, true);
+        this(size, Long.MAX_VALUE, x -> 0);
+    }
+
+    public Cache(int size, long maxWeight, ToLongFunction<V> weigher) {
+        super(16, 0.75f, true);
         this.MAX_SIZE = size;
+        this.MAX_WEIGHT = maxWeight;
+        this.weigher = weigher;
+    }
+
+    public long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        weight += weigher.applyAsLong(value);
+
+        V old = super.put(key, value);
+        if (old != null) weight -= weigher.applyAsLong(old);
+
+        return old;
+    }
+
+    @Override
+    public V remove(Object key) {
+        V old = super.remove(key);
+        if (old != null) weight -= weigher.applyAsLong(old);
+
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        weight = 0;
     }
 
     @Override
     protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
-        return size() > MAX_SIZE;
+        Iterator<Map.Entry<K, V>> it = entrySet().iterator();
+        while ((size() > MAX_SIZE || weight > MAX_WEIGHT) && size() > 1) {
+            weight -= weigher.applyAsLong(it.next().getValue());
+            it.remove();
+        }
+
+        return false;
     }
 }
@@ -0,0 +1,96 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+public class CompressionPolicy {
+	private boolean enabled;
+	private int minSize;
+	private int level;
+	private List<String> mimeTypes;
+
+	public CompressionPolicy() {
+		this.enabled = true;
+		this.minSize = 1024;
+		this.level = Deflater.DEFAULT_COMPRESSION;
+		this.mimeTypes = new CopyOnWriteArrayList<>(List.of("text/", "application/json", "application/javascript",
+				"application/xml", "image/svg+xml"));
+	}
+
+	public boolean shouldCompress(String mimeType, long length) {
+		if (!enabled || mimeType == null || (length >= 0 && length < minSize))
+			return false;
+
+		for (String allowed: mimeTypes) {
+			if (mimeType.startsWith(allowed))
+				return true;
+		}
+
+		return false;
+	}
+
+	public OutputStream compress(OutputStream output) throws IOException {
+		return new GZIPOutputStream(output) {
+			{
+				def.setLevel(level);
+			}
+		};
+	}
+
+	public byte[] compress(byte[] content) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(32, content.length / 4));
+		try (OutputStream output = compress(compressed)) {
+			output.write(content);
+		}
+
+		return compressed.toByteArray();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public void setMinSize(int minSize) {
+		this.minSize = minSize;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	public List<String> getMimeTypes() {
+		return mimeTypes;
+	}
+}
@@ -0,0 +1,62 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConnectionStats {
+	private LongAdder acquired;
+	private LongAdder acquireNanos;
+	private LongAdder holdNanos;
+	private LongAccumulator maxHoldNanos;
+
+	public ConnectionStats() {
+		this.acquired = new LongAdder();
+		this.acquireNanos = new LongAdder();
+		this.holdNanos = new LongAdder();
+		this.maxHoldNanos = new LongAccumulator(Math::max, 0);
+	}
+
+	public void recordAcquire(long nanos) {
+		acquired.increment();
+		acquireNanos.add(nanos);
+	}
+
+	public void recordRelease(long heldNanos) {
+		holdNanos.add(heldNanos);
+		maxHoldNanos.accumulate(heldNanos);
+	}
+
+	public long getAcquiredCount() {
+		return acquired.sum();
+	}
+
+	public double getAverageAcquireMillis() {
+		long count = acquired.sum();
+		return count > 0 ? (double)acquireNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+	}
+
+	public double getAverageHoldMillis() {
+		long count = acquired.sum();
+		return count > 0 ? (double)holdNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+	}
+
+	public double getMaxHoldMillis() {
+		return (double)maxHoldNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
@@ -15,27 +15,38 @@
  */
 package jmodelo;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.script.ScriptEngine;
 import javax.script.ScriptException;
 
 import com.google.gson.Gson;
 import com.sun.net.httpserver.HttpExchange;
 
 public abstract class Controller {
-	private ScriptEngine scriptEngine;
+	private static final Gson GSON = new Gson();
+
+	private ViewEngine viewEngine;
 	private String area;
 	private HttpExchange exchange;
 	private Cookies cookies;
 	private Session session;
-	private Connection databaseConnection;
+	private LazyConnection databaseConnection;
 	private Map<String, Object> viewData;
+	private RequestTimings timings;
+	private OutputCacheStore outputCache;
 
 	public ActionResult html(String content) {
 		return new ActionResult(content.getBytes(), "text/html;charset=utf-8", 200);
@@ -49,15 +60,37 @@ public abstract class Controller {
 		return new ActionResult(Files.readAllBytes(f.toPath()), mimeType, 200);
 	}
 
+	public ActionResult streamFile(File f, String mimeType) throws IOException {
+		long length = f.length();
+
+		return new ActionResult(output -> {
+			try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+				long position = 0;
+				while (position < length) {
+					long transferred = channel.transferTo(position, length - position, Channels.newChannel(output));
+					if (transferred <= 0) break;
+
+					position += transferred;
+				}
+			}
+		}, length, mimeType, 200, Map.of());
+	}
+
+	public ActionResult stream(String mimeType, BodyWriter bodyWriter) {
+		return new ActionResult(bodyWriter, -1, mimeType, 200, Map.of());
+	}
+
 	public ActionResult partialView(String viewFile) throws IOException, ScriptException {
 		return partialView(viewFile, null);
 	}
 
 	public ActionResult partialView(String viewFile, Object model) throws IOException, ScriptException {
-		ViewInterpreter viewInterpreter = new ViewInterpreter(scriptEngine, area, 
-				this.getClass().getSimpleName().replace("Controller", ""), viewData, cookies, session);
+		long start = System.nanoTime();
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+		createViewInterpreter().render(viewFile, model, new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+		recordView(start);
 
-		return new ActionResult(viewInterpreter.parsePartialView(viewFile, model, true).getBytes(), "text/html;charset=utf-8", 200);
+		return new ActionResult(buffer.toByteArray(), "text/html;charset=utf-8", 200);
 	}
 
 	public ActionResult view(String viewFile) throws IOException, ScriptException {
@@ -69,14 +102,48 @@ public abstract class Controller {
 	}
 
 	public ActionResult view(String viewFile, String layoutFile, Object model) throws IOException, ScriptException {
-		ViewInterpreter viewInterpreter = new ViewInterpreter(scriptEngine, area, 
-				this.getClass().getSimpleName().replace("Controller", ""), viewData, cookies, session);
+		long start = System.nanoTime();
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+		createViewInterpreter().renderView(viewFile, layoutFile, model, new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+		recordView(start);
+
+		return new ActionResult(buffer.toByteArray(), "text/html;charset=utf-8", 200);
+	}
 
-		return new ActionResult(viewInterpreter.parseView(viewFile, layoutFile, model).getBytes(), "text/html;charset=utf-8", 200);
+	public ActionResult streamView(String viewFile) {
+		return streamView(viewFile, null);
+	}
+
+	public ActionResult streamView(String viewFile, Object model) {
+		return streamView(viewFile, "layout.html", model);
+	}
+
+	public ActionResult streamView(String viewFile, String layoutFile, Object model) {
+		ViewInterpreter viewInterpreter = createViewInterpreter();
+
+		return stream("text/html;charset=utf-8", output -> {
+			long start = System.nanoTime();
+			try {
+				viewInterpreter.renderView(viewFile, layoutFile, model, new OutputStreamWriter(output, StandardCharsets.UTF_8));
+			} catch (ScriptException e) {
+				throw new IOException(e);
+			} finally {
+				// streamed views are rendered while the response is written, so this also includes writing it
+				recordView(start);
+			}
+		});
 	}
 
 	public ActionResult json(Object o) {
-		return new ActionResult( new Gson().toJson(o).getBytes(), "application/json", 200);
+		return new ActionResult(GSON.toJson(o).getBytes(StandardCharsets.UTF_8), "application/json", 200);
+	}
+
+	public ActionResult streamJson(Object o) {
+		return stream("application/json", output -> {
+			Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+			GSON.toJson(o, writer);
+			writer.flush();
+		});
 	}
 
 	public ActionResult redirect(String url) {
@@ -85,9 +152,18 @@ public abstract class Controller {
 		return new ActionResult("".getBytes(), "text/html", 303);
 	}
 
-	public void init(ScriptEngine scriptEngine, HttpExchange exchange, Cookies cookies, Session session, String area,
-			Connection databaseConnection) {
-		this.scriptEngine = scriptEngine;
+	private void recordView(long start) {
+		if (timings != null) timings.addSince(RequestStats.Phase.VIEW, start);
+	}
+
+	private ViewInterpreter createViewInterpreter() {
+		return new ViewInterpreter(viewEngine, area, 
+				this.getClass().getSimpleName().replace("Controller", ""), viewData, cookies, session);
+	}
+
+	public void init(ViewEngine viewEngine, HttpExchange exchange, Cookies cookies, Session session, String area,
+			LazyConnection databaseConnection) {
+		this.viewEngine = viewEngine;
 		this.exchange = exchange;
 		this.cookies = cookies;
 		this.session = session;
@@ -97,6 +173,14 @@ public abstract class Controller {
 		this.viewData = new HashMap<>();
 	}
 
+	void setRequestTimings(RequestTimings timings) {
+		this.timings = timings;
+	}
+
+	void setOutputCache(OutputCacheStore outputCache) {
+		this.outputCache = outputCache;
+	}
+
 	public HttpExchange getExchange() {
 		return exchange;
 	}
@@ -109,8 +193,17 @@ public abstract class Controller {
 		return session;
 	}
 
+	// For invalidating cached responses after the data they show has changed.
+	public OutputCacheStore getOutputCache() {
+		return outputCache;
+	}
+
 	public Connection getDatabaseConnection() {
-		return databaseConnection;
+		try {
+			return databaseConnection != null ? databaseConnection.get() : null;
+		} catch (SQLException e) {
+			throw new IllegalStateException("Could not acquire a database connection", e);
+		}
 	}
 
 	public Map<String, Object> getViewData() {
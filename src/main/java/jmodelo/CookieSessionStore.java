@@ -0,0 +1,222 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+// Keeps the whole session in a cookie, signed with HMAC-SHA256 and optionally encrypted with AES-GCM, so that no state
+// is kept on the server. The first key signs new cookies, the others are only accepted for verifying, which allows
+// rotating keys without logging everyone out.
+public class CookieSessionStore implements SessionStore {
+	public static final String SESSION_COOKIE = "session";
+
+	private static final Gson GSON = new Gson();
+	private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+	private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static final int IV_LENGTH = 12;
+
+	private List<SessionKey> keys;
+	private boolean encrypted;
+	private int maxSize;
+	private long maxAge;
+
+	private record SessionKey(SecretKeySpec signingKey, SecretKeySpec encryptionKey) {}
+
+	private record CookieSession(long created, Map<String, String> values) {}
+
+	public CookieSessionStore(List<byte[]> keys, boolean encrypted) {
+		if (keys.isEmpty())
+			throw new IllegalArgumentException("At least one key is needed");
+
+		this.keys = keys.stream().map(CookieSessionStore::deriveKey).toList();
+		this.encrypted = encrypted;
+		this.maxSize = 4000;
+		this.maxAge = TimeUnit.HOURS.toMillis(24);
+	}
+
+	@Override
+	public SessionData load(Cookies cookies) throws IOException {
+		CookieSession session = read(cookies, true);
+		return session != null ? new SessionData(0, session.values()) : null;
+	}
+
+	// The cookie itself, as the session has no other id. It changes whenever the session is saved, but requests sent
+	// at the same time carry the same cookie.
+	@Override
+	public String sessionId(Cookies cookies) {
+		return cookies.getCookie(SESSION_COOKIE);
+	}
+
+	@Override
+	public void save(Cookies cookies, long version, Map<String, String> updated, Set<String> removed) throws IOException {
+		CookieSession current = read(cookies, false);
+
+		Map<String, String> values = current != null ? new HashMap<>(current.values()) : new HashMap<>();
+		values.putAll(updated);
+		values.keySet().removeAll(removed);
+
+		if (values.isEmpty()) {
+			if (current != null) cookies.removeCookie(SESSION_COOKIE);
+			return;
+		}
+
+		long created = current != null ? current.created() : System.currentTimeMillis();
+		String cookieValue = encode(new CookieSession(created, values));
+		if (cookieValue.length() > maxSize)
+			throw new IOException("Session does not fit in a cookie (%d bytes)".formatted(cookieValue.length()));
+
+		addCookie(cookies, cookieValue, created);
+	}
+
+	@Override
+	public void remove(Cookies cookies) throws IOException {
+		if (cookies.getCookie(SESSION_COOKIE) != null)
+			cookies.removeCookie(SESSION_COOKIE);
+	}
+
+	public boolean isEncrypted() {
+		return encrypted;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	// Browsers drop cookies larger than about 4KB, so saving a bigger session fails instead.
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public long getMaxAge() {
+		return maxAge;
+	}
+
+	public void setMaxAge(long maxAge) {
+		this.maxAge = maxAge;
+	}
+
+	private void addCookie(Cookies cookies, String cookieValue, long created) {
+		long remaining = created + maxAge - System.currentTimeMillis();
+		cookies.addCookie(SESSION_COOKIE, cookieValue, (int)Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remaining)));
+	}
+
+	// Sessions signed with an older key are signed again with the current one when resign is set.
+	private CookieSession read(Cookies cookies, boolean resign) {
+		String cookieValue = cookies.getCookie(SESSION_COOKIE);
+		if (cookieValue == null || cookieValue.length() > maxSize) return null;
+
+		int separator = cookieValue.indexOf('.');
+		if (separator == -1) return null;
+
+		try {
+			byte[] payload = DECODER.decode(cookieValue.substring(0, separator));
+			byte[] signature = DECODER.decode(cookieValue.substring(separator + 1));
+
+			for (SessionKey key: keys) {
+				if (!MessageDigest.isEqual(sign(key, payload), signature)) continue;
+
+				byte[] json = encrypted ? decrypt(key, payload) : payload;
+				CookieSession session = GSON.fromJson(new String(json, StandardCharsets.UTF_8), CookieSession.class);
+				if (session == null || session.values() == null || System.currentTimeMillis() - session.created() > maxAge)
+					return null;
+
+				if (resign && key != keys.get(0))
+					addCookie(cookies, encode(session), session.created());
+
+				return session;
+			}
+		} catch (IllegalArgumentException | JsonParseException | GeneralSecurityException e) {}
+
+		return null;
+	}
+
+	private String encode(CookieSession session) {
+		SessionKey key = keys.get(0);
+		try {
+			byte[] json = GSON.toJson(session).getBytes(StandardCharsets.UTF_8);
+			byte[] payload = encrypted ? encrypt(key, json) : json;
+
+			return ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(key, payload));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] sign(SessionKey key, byte[] payload) throws GeneralSecurityException {
+		Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(key.signingKey());
+
+		return mac.doFinal(payload);
+	}
+
+	private static byte[] encrypt(SessionKey key, byte[] data) throws GeneralSecurityException {
+		byte[] iv = new byte[IV_LENGTH];
+		RANDOM.nextBytes(iv);
+
+		Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+		cipher.init(Cipher.ENCRYPT_MODE, key.encryptionKey(), new GCMParameterSpec(128, iv));
+		byte[] encrypted = cipher.doFinal(data);
+
+		return ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array();
+	}
+
+	private static byte[] decrypt(SessionKey key, byte[] data) throws GeneralSecurityException {
+		if (data.length <= IV_LENGTH)
+			throw new GeneralSecurityException("Invalid session cookie");
+
+		Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+		cipher.init(Cipher.DECRYPT_MODE, key.encryptionKey(), new GCMParameterSpec(128, data, 0, IV_LENGTH));
+
+		return cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH);
+	}
+
+	// Separate keys for signing and encrypting are derived from the configured secret.
+	private static SessionKey deriveKey(byte[] secret) {
+		if (secret.length < 32)
+			throw new IllegalArgumentException("Session keys must be at least 32 bytes long");
+
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+			byte[] signingKey = mac.doFinal("jmodelo session signing".getBytes(StandardCharsets.UTF_8));
+			byte[] encryptionKey = mac.doFinal("jmodelo session encryption".getBytes(StandardCharsets.UTF_8));
+
+			return new SessionKey(new SecretKeySpec(signingKey, "HmacSHA256"), new SecretKeySpec(encryptionKey, "AES"));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -44,7 +44,7 @@ public class Cookies {
 	}
 
 	public void removeCookie(String name) {
-		exchange.getResponseHeaders().add("Set-Cookie", "%s=%s; Max-Age=%d".formatted(name, "", 0));
+		exchange.getResponseHeaders().add("Set-Cookie", "%s=%s; Path=/; Max-Age=%d".formatted(name, "", 0));
 
 		cookies.remove(name);
 	}
@@ -54,14 +54,8 @@ public class Cookies {
 
 		List<String> cookieValues = exchange.getRequestHeaders().get("Cookie");
 		if (cookieValues != null) {
-			for (String cookieStr: cookieValues) {
-				String[] pairs = cookieStr.contains(";") ? cookieStr.split(";") : new String[] {cookieStr};
-
-				for (String pair: pairs) {
-					String[] parts = pair.split("=");
-					cookies.put(parts[0], parts[1]);
-				}
-			}
+			for (String cookieStr: cookieValues)
+				FormParser.parseCookies(cookieStr, cookies);
 		}
 	}
 }
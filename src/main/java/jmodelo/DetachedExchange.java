@@ -0,0 +1,135 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+// A copy of the request side of an exchange, for running an action again after its response has been sent. The
+// response headers are kept separately and nothing is written to the connection.
+class DetachedExchange extends HttpExchange {
+	private final String requestMethod;
+	private final URI requestUri;
+	private final Headers requestHeaders;
+	private final Headers responseHeaders;
+	private final HttpContext httpContext;
+	private final HttpPrincipal principal;
+	private final InetSocketAddress remoteAddress;
+	private final InetSocketAddress localAddress;
+	private final String protocol;
+	private final Map<String, Object> attributes;
+
+	DetachedExchange(HttpExchange exchange) {
+		this.requestMethod = exchange.getRequestMethod();
+		this.requestUri = exchange.getRequestURI();
+		this.requestHeaders = new Headers(exchange.getRequestHeaders());
+		this.responseHeaders = new Headers();
+		this.httpContext = exchange.getHttpContext();
+		this.principal = exchange.getPrincipal();
+		this.remoteAddress = exchange.getRemoteAddress();
+		this.localAddress = exchange.getLocalAddress();
+		this.protocol = exchange.getProtocol();
+		this.attributes = new HashMap<>();
+	}
+
+	@Override
+	public Headers getRequestHeaders() {
+		return requestHeaders;
+	}
+
+	@Override
+	public Headers getResponseHeaders() {
+		return responseHeaders;
+	}
+
+	@Override
+	public URI getRequestURI() {
+		return requestUri;
+	}
+
+	@Override
+	public String getRequestMethod() {
+		return requestMethod;
+	}
+
+	@Override
+	public HttpContext getHttpContext() {
+		return httpContext;
+	}
+
+	@Override
+	public void close() {}
+
+	@Override
+	public InputStream getRequestBody() {
+		return InputStream.nullInputStream();
+	}
+
+	@Override
+	public OutputStream getResponseBody() {
+		return OutputStream.nullOutputStream();
+	}
+
+	@Override
+	public void sendResponseHeaders(int rCode, long responseLength) {}
+
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return remoteAddress;
+	}
+
+	@Override
+	public int getResponseCode() {
+		return -1;
+	}
+
+	@Override
+	public InetSocketAddress getLocalAddress() {
+		return localAddress;
+	}
+
+	@Override
+	public String getProtocol() {
+		return protocol;
+	}
+
+	@Override
+	public synchronized Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	@Override
+	public synchronized void setAttribute(String name, Object value) {
+		attributes.put(name, value);
+	}
+
+	@Override
+	public void setStreams(InputStream i, OutputStream o) {}
+
+	@Override
+	public HttpPrincipal getPrincipal() {
+		return principal;
+	}
+}
@@ -0,0 +1,136 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+public class FileWatcher implements Closeable {
+	private WatchService watchService;
+	private Map<WatchKey, WatchedDirectory> directories;
+
+	private record Root(Path path, String prefix, Consumer<String> fileChanged, Runnable allChanged) {}
+
+	private record WatchedDirectory(Root root, Path path) {}
+
+	public FileWatcher() throws IOException {
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.directories = new ConcurrentHashMap<>();
+	}
+
+	// fileChanged receives the prefix followed by the path of the changed file relative to the root, using '/' as
+	// separator. allChanged is called when events were lost and anything under the root may have changed.
+	public void watch(Path root, String prefix, Consumer<String> fileChanged, Runnable allChanged) throws IOException {
+		registerTree(new Root(root, prefix, fileChanged, allChanged), root);
+	}
+
+	public void start() {
+		Thread.ofPlatform().name("jmodelo-file-watcher").daemon().start(this::run);
+	}
+
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	private void run() {
+		while (true) {
+			WatchKey key;
+			try {
+				key = watchService.take();
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+
+			WatchedDirectory directory = directories.get(key);
+			if (directory == null) {
+				key.cancel();
+				continue;
+			}
+
+			Root root = directory.root();
+			Set<String> changed = new LinkedHashSet<>();
+			boolean overflow = false;
+			for (WatchEvent<?> event: key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					overflow = true;
+					continue;
+				}
+
+				Path path = directory.path().resolve((Path)event.context());
+				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+					try {
+						registerTree(root, path);
+					} catch (IOException e) {
+						overflow = true;
+					}
+
+					// files may have been written before the new directory was registered
+					try (Stream<Path> files = Files.walk(path)) {
+						files.filter(Files::isRegularFile).forEach(x -> changed.add(relativePath(root, x)));
+					} catch (IOException e) {
+						overflow = true;
+					}
+				} else {
+					changed.add(relativePath(root, path));
+				}
+			}
+
+			if (!key.reset())
+				directories.remove(key);
+
+			try {
+				if (overflow) root.allChanged().run();
+				else changed.forEach(root.fileChanged());
+			} catch (RuntimeException e) {
+				System.err.println("File change listener failed: %s".formatted(e));
+			}
+		}
+	}
+
+	private void registerTree(Root root, Path start) throws IOException {
+		List<Path> folders;
+		try (Stream<Path> paths = Files.walk(start)) {
+			folders = paths.filter(Files::isDirectory).toList();
+		}
+
+		for (Path folder: folders) {
+			WatchKey key = folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+			directories.put(key, new WatchedDirectory(root, folder));
+		}
+	}
+
+	private static String relativePath(Root root, Path path) {
+		return root.prefix() + root.path().relativize(path).toString().replace(File.separatorChar, '/');
+	}
+}
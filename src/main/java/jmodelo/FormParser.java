@@ -0,0 +1,127 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Single pass parsers for query strings, urlencoded bodies and cookie headers. Names and values are decoded one by
+// one after splitting, so encoded '&' and '=' characters stay inside the value they belong to.
+public class FormParser {
+
+	private FormParser() {}
+
+	public static Map<String, String> parseQuery(String query) {
+		Map<String, String> parameters = new HashMap<>();
+		if (query == null) return parameters;
+
+		int length = query.length();
+		int start = 0;
+		while (start < length) {
+			int end = query.indexOf('&', start);
+			if (end == -1) end = length;
+
+			if (end > start) {
+				int separator = query.indexOf('=', start, end);
+				if (separator == -1)
+					parameters.put(decode(query, start, end), "");
+				else
+					parameters.put(decode(query, start, separator), decode(query, separator + 1, end));
+			}
+
+			start = end + 1;
+		}
+
+		return parameters;
+	}
+
+	// Cookie values are not url decoded, only the whitespace around names and values is removed. Pairs without a
+	// name are ignored, and when a name repeats the first value is kept, as browsers send the most specific cookie first.
+	public static void parseCookies(String header, Map<String, String> cookies) {
+		int length = header.length();
+		int start = 0;
+		while (start < length) {
+			int end = header.indexOf(';', start);
+			if (end == -1) end = length;
+
+			int separator = header.indexOf('=', start, end);
+			if (separator != -1) {
+				String name = trim(header, start, separator);
+				if (!name.isEmpty())
+					cookies.putIfAbsent(name, trim(header, separator + 1, end));
+			}
+
+			start = end + 1;
+		}
+	}
+
+	// Decodes %XX escapes as UTF-8 and '+' as a space. Malformed escapes are kept as they are instead of failing.
+	static String decode(String s, int start, int end) {
+		int i = start;
+		while (i < end && s.charAt(i) != '%' && s.charAt(i) != '+')
+			i++;
+
+		if (i == end) return s.substring(start, end);
+
+		StringBuilder sb = new StringBuilder(end - start);
+		sb.append(s, start, i);
+
+		byte[] bytes = null;
+		while (i < end) {
+			char c = s.charAt(i);
+			if (c == '+') {
+				sb.append(' ');
+				i++;
+			} else if (c == '%' && isEscape(s, i, end)) {
+				if (bytes == null) bytes = new byte[(end - i) / 3];
+
+				int count = 0;
+				while (isEscape(s, i, end)) {
+					bytes[count++] = (byte)((hexValue(s.charAt(i + 1)) << 4) | hexValue(s.charAt(i + 2)));
+					i += 3;
+				}
+
+				sb.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+
+		return sb.toString();
+	}
+
+	private static boolean isEscape(String s, int i, int end) {
+		return i + 2 < end && s.charAt(i) == '%' && hexValue(s.charAt(i + 1)) != -1 && hexValue(s.charAt(i + 2)) != -1;
+	}
+
+	private static int hexValue(char c) {
+		if (c >= '0' && c <= '9') return c - '0';
+		if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+		if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+		return -1;
+	}
+
+	private static String trim(String s, int start, int end) {
+		while (start < end && s.charAt(start) <= ' ')
+			start++;
+		while (end > start && s.charAt(end - 1) <= ' ')
+			end--;
+
+		return s.substring(start, end);
+	}
+}
@@ -0,0 +1,69 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+public class LazyConnection implements AutoCloseable {
+	private DataSource dataSource;
+	private ConnectionStats stats;
+	private Connection connection;
+	private long acquiredAt;
+	private long acquireNanos;
+	private boolean closed;
+
+	public LazyConnection(DataSource dataSource, ConnectionStats stats) {
+		this.dataSource = dataSource;
+		this.stats = stats;
+		this.acquireNanos = -1;
+	}
+
+	public Connection get() throws SQLException {
+		if (closed)
+			throw new SQLException("The request has already completed");
+
+		if (connection == null && dataSource != null) {
+			long start = System.nanoTime();
+			connection = dataSource.getConnection();
+			acquiredAt = System.nanoTime();
+
+			acquireNanos = acquiredAt - start;
+			stats.recordAcquire(acquireNanos);
+		}
+
+		return connection;
+	}
+
+	long getAcquireNanos() {
+		return acquireNanos;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		closed = true;
+		if (connection == null) return;
+
+		try {
+			connection.close();
+		} finally {
+			stats.recordRelease(System.nanoTime() - acquiredAt);
+			connection = null;
+		}
+	}
+}
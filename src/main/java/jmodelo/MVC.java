@@ -17,6 +17,9 @@ package jmodelo;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
@@ -35,12 +38,27 @@ import com.sun.net.httpserver.HttpsConfigurator;
 import com.sun.net.httpserver.HttpsParameters;
 import com.sun.net.httpserver.HttpsServer;
 import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 
 public class MVC {
 	public static boolean DEBUG;
 	private List<String> areas;
 	private String controllersPackage;
 	private HikariConfig dbConfig;
+	private HikariDataSource dataSource;
+	private ConnectionStats connectionStats;
+	private RequestStats requestStats;
+	private String metricsPath;
+	private StaticFiles staticFiles;
+	private CompressionPolicy compressionPolicy;
+	private ViewEngine viewEngine;
+	private SessionStore sessionStore;
+	private UploadPolicy uploadPolicy;
+	private OutputCacheStore outputCache;
+	private boolean hotReload;
+	private boolean tcpNoDelay;
+	private FileWatcher fileWatcher;
+	private boolean tempFolderSwept;
 
 	public MVC(String controllersPackage) {
 		this(controllersPackage, false);
@@ -54,12 +72,27 @@ public class MVC {
 		this.controllersPackage = controllersPackage;
 		this.areas = areas;
 		this.dbConfig = dbConfig;
+		this.connectionStats = new ConnectionStats();
+		this.requestStats = new RequestStats();
+		this.compressionPolicy = new CompressionPolicy();
+		this.staticFiles = new StaticFiles("www", compressionPolicy);
+		this.viewEngine = new ViewEngine();
+		this.sessionStore = new MemorySessionStore(Paths.get("sessions"));
+		this.uploadPolicy = new UploadPolicy();
+		this.outputCache = new OutputCacheStore(compressionPolicy);
+
+		this.hotReload = debug;
 
 		MVC.DEBUG = debug;
 	}
 
 	public void startHttp(int port) throws IOException {
-		HttpServer server = HttpServer.create(new InetSocketAddress(port), 0, "/", new MyHttpHandler(areas, controllersPackage, dbConfig));
+		warmUpViews();
+		startFileWatcher();
+		sweepTempFolder();
+		enableNoDelay();
+
+		HttpServer server = HttpServer.create(new InetSocketAddress(port), 0, "/", createHandler());
 
 		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
 		server.start();
@@ -69,7 +102,12 @@ public class MVC {
 
 	public void startHttps(int port, String keyStoreFile, String password) throws IOException, NoSuchAlgorithmException, UnrecoverableKeyException, 
 	KeyManagementException, KeyStoreException, CertificateException {
-		HttpsServer server = HttpsServer.create(new InetSocketAddress(port), 0, "/", new MyHttpHandler(areas, controllersPackage, dbConfig));
+		warmUpViews();
+		startFileWatcher();
+		sweepTempFolder();
+		enableNoDelay();
+
+		HttpsServer server = HttpsServer.create(new InetSocketAddress(port), 0, "/", createHandler());
 
 		server.setHttpsConfigurator(getHttpsConfigurator(createSSLContext(keyStoreFile, password)));
 
@@ -79,6 +117,131 @@ public class MVC {
 		System.out.println("Server (https) started %d".formatted(port));
 	}
 
+	public ConnectionStats getConnectionStats() {
+		return connectionStats;
+	}
+
+	public RequestStats getRequestStats() {
+		return requestStats;
+	}
+
+	// Returns all metrics in the Prometheus text format, the same as the metrics endpoint.
+	public String getPrometheusMetrics() {
+		return PrometheusMetrics.format(requestStats, connectionStats, dataSource, viewEngine, sessionStore, outputCache);
+	}
+
+	public String getMetricsPath() {
+		return metricsPath;
+	}
+
+	// Serves the metrics at the given path, e.g. "/metrics". Disabled by default.
+	public void setMetricsPath(String metricsPath) {
+		this.metricsPath = metricsPath;
+	}
+
+	// Null when no database was configured or the server has not been started yet.
+	public HikariDataSource getDataSource() {
+		return dataSource;
+	}
+
+	public StaticFiles getStaticFiles() {
+		return staticFiles;
+	}
+
+	public CompressionPolicy getCompressionPolicy() {
+		return compressionPolicy;
+	}
+
+	public ViewEngine getViewEngine() {
+		return viewEngine;
+	}
+
+	public void setViewEngine(ViewEngine viewEngine) {
+		this.viewEngine = viewEngine;
+	}
+
+	public SessionStore getSessionStore() {
+		return sessionStore;
+	}
+
+	public void setSessionStore(SessionStore sessionStore) {
+		this.sessionStore = sessionStore;
+	}
+
+	public UploadPolicy getUploadPolicy() {
+		return uploadPolicy;
+	}
+
+	public OutputCacheStore getOutputCache() {
+		return outputCache;
+	}
+
+	public boolean isHotReload() {
+		return hotReload;
+	}
+
+	public void setHotReload(boolean hotReload) {
+		this.hotReload = hotReload;
+	}
+
+	public boolean isTcpNoDelay() {
+		return tcpNoDelay;
+	}
+
+	// The JDK server writes the headers and the body of a response separately, so without TCP_NODELAY every response
+	// on a keep-alive connection after the first one waits about 40ms for a delayed ack. Off by default; it applies to
+	// every server of the JVM and is left alone when the application has set sun.net.httpserver.nodelay itself.
+	public void setTcpNoDelay(boolean tcpNoDelay) {
+		this.tcpNoDelay = tcpNoDelay;
+	}
+
+	// Must be set before the first server is created.
+	// Leftover uploads are removed once per instance, not again when a second server is started.
+	private void sweepTempFolder() {
+		if (tempFolderSwept) return;
+
+		tempFolderSwept = true;
+		uploadPolicy.sweepTempFolder();
+	}
+
+	private void enableNoDelay() {
+		if (tcpNoDelay && System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private MyHttpHandler createHandler() throws IOException {
+		if (dbConfig != null && dataSource == null)
+			dataSource = new HikariDataSource(dbConfig);
+
+		return new MyHttpHandler(areas, controllersPackage, dataSource, connectionStats, requestStats, metricsPath, staticFiles,
+				compressionPolicy, viewEngine, sessionStore, uploadPolicy, outputCache);
+	}
+
+	private void warmUpViews() throws IOException {
+		Path viewsFolder = Paths.get("views");
+		if (MVC.DEBUG || !Files.isDirectory(viewsFolder)) return;
+
+		System.out.println("Compiled %d views".formatted(viewEngine.warmUp(viewsFolder)));
+	}
+
+	private void startFileWatcher() throws IOException {
+		if (!hotReload || fileWatcher != null) return;
+
+		fileWatcher = new FileWatcher();
+
+		Path viewsFolder = Paths.get("views");
+		if (Files.isDirectory(viewsFolder))
+			fileWatcher.watch(viewsFolder, "views/", x -> viewEngine.reload(x), () -> viewEngine.invalidateAll());
+
+		Path staticFolder = Paths.get(staticFiles.getRoot());
+		if (Files.isDirectory(staticFolder)) {
+			fileWatcher.watch(staticFolder, "/", staticFiles::invalidate, staticFiles::invalidateAll);
+			staticFiles.setWatched(true);
+		}
+
+		fileWatcher.start();
+	}
+
 	private HttpsConfigurator getHttpsConfigurator(SSLContext context) throws NoSuchAlgorithmException {
 		return new HttpsConfigurator(context) {
 			@Override
@@ -0,0 +1,474 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+// Keeps sessions in memory. When a folder is given, changed sessions are written there in batches by a background
+// thread and sessions missing from memory (e.g. after a restart) are read back from it.
+public class MemorySessionStore implements SessionStore, Closeable {
+	public static final String SESSION_COOKIE = "sessionid";
+
+	private static final Gson GSON = new Gson();
+	private static final Type MAP_TYPE = new TypeToken<Map<String, String>>(){}.getType();
+	private static final Pattern SESSION_ID = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+	private Path folder;
+	private long flushInterval;
+	private volatile long idleTimeout;
+	private volatile long absoluteTimeout;
+	private volatile int maxSessions;
+	private volatile long sweepInterval;
+	private Map<String, StoredSession> sessions;
+	private Set<String> dirty;
+	private Set<String> touched;
+	private volatile ScheduledExecutorService scheduler;
+	private AtomicBoolean evictionScheduled;
+
+	private LongAdder mergedCount;
+	private LongAdder expiredCount;
+	private LongAdder evictedCount;
+	private LongAdder sweepCount;
+	private volatile long lastSweepNanos;
+	private LongAccumulator maxSweepNanos;
+
+	private static class StoredSession {
+		private final Map<String, String> values;
+		private final long version;
+		private final long created;
+		private volatile long lastAccess;
+		// the access time last written to the folder, as the modification time of the session's file
+		private volatile long persistedAccess;
+
+		StoredSession(Map<String, String> values, long version, long created, long lastAccess) {
+			this.values = values;
+			this.version = version;
+			this.created = created;
+			this.lastAccess = lastAccess;
+			this.persistedAccess = lastAccess;
+		}
+	}
+
+	private record PersistedSession(long created, Map<String, String> values) {}
+
+	public MemorySessionStore() {
+		this(null);
+	}
+
+	public MemorySessionStore(Path folder) {
+		this(folder, TimeUnit.MINUTES.toMillis(30), 1000);
+	}
+
+	public MemorySessionStore(Path folder, long idleTimeout, long flushInterval) {
+		this.folder = folder;
+		this.flushInterval = flushInterval;
+		this.idleTimeout = idleTimeout;
+		this.absoluteTimeout = TimeUnit.HOURS.toMillis(24);
+		this.maxSessions = 100_000;
+		this.sweepInterval = TimeUnit.MINUTES.toMillis(1);
+		this.sessions = new ConcurrentHashMap<>();
+		this.dirty = ConcurrentHashMap.newKeySet();
+		this.touched = ConcurrentHashMap.newKeySet();
+		this.evictionScheduled = new AtomicBoolean();
+
+		this.mergedCount = new LongAdder();
+		this.expiredCount = new LongAdder();
+		this.evictedCount = new LongAdder();
+		this.sweepCount = new LongAdder();
+		this.maxSweepNanos = new LongAccumulator(Math::max, 0);
+	}
+
+	@Override
+	public SessionData load(Cookies cookies) throws IOException {
+		String sessionId = cookies.getCookie(SESSION_COOKIE);
+		if (sessionId == null || !SESSION_ID.matcher(sessionId).matches()) return null;
+
+		startMaintenance();
+
+		long now = System.currentTimeMillis();
+
+		StoredSession session = sessions.get(sessionId);
+		if (session == null) {
+			if (dirty.contains(sessionId)) return null;
+
+			session = readSession(sessionId);
+			if (session == null) return null;
+
+			StoredSession current = sessions.putIfAbsent(sessionId, session);
+			if (current != null) session = current;
+			else checkCapacity();
+		}
+
+		if (isExpired(session, now)) {
+			if (sessions.remove(sessionId, session)) {
+				expiredCount.increment();
+				markDirty(sessionId);
+			}
+			return null;
+		}
+
+		session.lastAccess = now;
+
+		// reads do not rewrite the file, so the access time is persisted separately, at a fraction of the idle
+		// timeout, for the session not to be taken as expired after a restart
+		if (folder != null && idleTimeout > 0 && now - session.persistedAccess > idleTimeout / 4)
+			touched.add(sessionId);
+
+		return new SessionData(session.version, session.values);
+	}
+
+	@Override
+	public String sessionId(Cookies cookies) {
+		return cookies.getCookie(SESSION_COOKIE);
+	}
+
+	@Override
+	public void save(Cookies cookies, long version, Map<String, String> updated, Set<String> removed) throws IOException {
+		long now = System.currentTimeMillis();
+		String sessionId = cookies.getCookie(SESSION_COOKIE);
+
+		// compare-and-set loop: a concurrent save of the same session makes this one retry on top of it
+		while (true) {
+			StoredSession current = sessionId != null ? sessions.get(sessionId) : null;
+			if (current == null) {
+				if (updated.isEmpty()) return;
+
+				// always a new id, so that an expired or made up id sent by the client is never adopted
+				sessionId = UUID.randomUUID().toString();
+				cookies.addCookie(SESSION_COOKIE, sessionId, (int)TimeUnit.MILLISECONDS.toSeconds(absoluteTimeout));
+
+				sessions.put(sessionId, new StoredSession(Collections.unmodifiableMap(new HashMap<>(updated)), 0, now, now));
+				checkCapacity();
+				markDirty(sessionId);
+				return;
+			}
+
+			Map<String, String> values = new HashMap<>(current.values);
+			values.putAll(updated);
+			values.keySet().removeAll(removed);
+
+			StoredSession session = new StoredSession(Collections.unmodifiableMap(values), current.version + 1,
+					current.created, now);
+			if (sessions.replace(sessionId, current, session)) {
+				if (current.version != version) mergedCount.increment();
+
+				markDirty(sessionId);
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void remove(Cookies cookies) throws IOException {
+		String sessionId = cookies.getCookie(SESSION_COOKIE);
+		if (sessionId == null || !SESSION_ID.matcher(sessionId).matches()) return;
+
+		sessions.remove(sessionId);
+		markDirty(sessionId);
+		cookies.removeCookie(SESSION_COOKIE);
+	}
+
+	public int size() {
+		return sessions.size();
+	}
+
+	public long getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public void setIdleTimeout(long idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public long getAbsoluteTimeout() {
+		return absoluteTimeout;
+	}
+
+	public void setAbsoluteTimeout(long absoluteTimeout) {
+		this.absoluteTimeout = absoluteTimeout;
+	}
+
+	public int getMaxSessions() {
+		return maxSessions;
+	}
+
+	public void setMaxSessions(int maxSessions) {
+		this.maxSessions = maxSessions;
+	}
+
+	public long getSweepInterval() {
+		return sweepInterval;
+	}
+
+	public void setSweepInterval(long sweepInterval) {
+		this.sweepInterval = sweepInterval;
+	}
+
+	// Number of saves that were merged with changes stored by other requests after the session was loaded.
+	public long getMergedCount() {
+		return mergedCount.sum();
+	}
+
+	public long getExpiredCount() {
+		return expiredCount.sum();
+	}
+
+	public long getEvictedCount() {
+		return evictedCount.sum();
+	}
+
+	public long getSweepCount() {
+		return sweepCount.sum();
+	}
+
+	public double getLastSweepMillis() {
+		return (double)lastSweepNanos / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	public double getMaxSweepMillis() {
+		return (double)maxSweepNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	// Changed sessions not yet written to the folder.
+	public int getPendingWrites() {
+		return dirty.size();
+	}
+
+	// Writes the changed sessions to the folder and the access times of the sessions that were only read.
+	public void flush() {
+		if (folder == null) {
+			dirty.clear();
+			return;
+		}
+
+		for (String sessionId: touched) {
+			touched.remove(sessionId);
+
+			StoredSession session = sessions.get(sessionId);
+			if (session == null || dirty.contains(sessionId)) continue;
+
+			long lastAccess = session.lastAccess;
+			try {
+				Files.setLastModifiedTime(sessionFile(sessionId), FileTime.fromMillis(lastAccess));
+				session.persistedAccess = lastAccess;
+			} catch (IOException e) {
+				System.err.println("Could not store access time of session %s: %s".formatted(sessionId, e));
+			}
+		}
+
+		for (String sessionId: dirty) {
+			StoredSession session = sessions.get(sessionId);
+			try {
+				if (session == null) Files.deleteIfExists(sessionFile(sessionId));
+				else writeSession(sessionId, session);
+			} catch (IOException e) {
+				System.err.println("Could not store session %s: %s".formatted(sessionId, e));
+			}
+
+			// the mark stays until the file matches memory, so that load() does not read back a stale file
+			dirty.remove(sessionId);
+			if (sessions.get(sessionId) != session)
+				dirty.add(sessionId);
+		}
+	}
+
+	// Removes the expired sessions from memory and from the folder, deleting their files in one batch.
+	public void sweep() {
+		long start = System.nanoTime();
+		long now = System.currentTimeMillis();
+
+		sessions.forEach((id, session) -> {
+			if (isExpired(session, now) && sessions.remove(id, session)) {
+				expiredCount.increment();
+				dirty.add(id);
+			}
+		});
+
+		if (folder != null && Files.isDirectory(folder))
+			sweepFolder(now);
+
+		flush();
+
+		long duration = System.nanoTime() - start;
+		sweepCount.increment();
+		lastSweepNanos = duration;
+		maxSweepNanos.accumulate(duration);
+	}
+
+	@Override
+	public void close() {
+		ScheduledExecutorService scheduler = this.scheduler;
+		if (scheduler != null) scheduler.shutdown();
+
+		flush();
+	}
+
+	private void markDirty(String sessionId) {
+		dirty.add(sessionId);
+		startMaintenance();
+	}
+
+	private void startMaintenance() {
+		if (scheduler != null) return;
+
+		synchronized (this) {
+			if (scheduler != null) return;
+
+			ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+					x -> Thread.ofPlatform().name("jmodelo-sessions").daemon().unstarted(x));
+			scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+			scheduler.execute(this::runSweep);
+			if (folder != null)
+				Runtime.getRuntime().addShutdownHook(new Thread(this::flush));
+
+			this.scheduler = scheduler;
+		}
+	}
+
+	private void runSweep() {
+		try {
+			sweep();
+		} catch (RuntimeException e) {
+			System.err.println("Session sweep failed: %s".formatted(e));
+		}
+
+		if (!scheduler.isShutdown())
+			scheduler.schedule(this::runSweep, sweepInterval, TimeUnit.MILLISECONDS);
+	}
+
+	// Sessions over the limit are evicted on the maintenance thread, least recently used first, so requests never
+	// wait for the eviction.
+	private void checkCapacity() {
+		if (sessions.size() <= maxSessions || !evictionScheduled.compareAndSet(false, true)) return;
+
+		startMaintenance();
+		scheduler.execute(() -> {
+			evictionScheduled.set(false);
+
+			int excess = sessions.size() - maxSessions;
+			if (excess <= 0) return;
+
+			List<Map.Entry<String, StoredSession>> entries = new ArrayList<>(sessions.entrySet());
+			entries.sort(Comparator.comparingLong(x -> x.getValue().lastAccess));
+			for (Map.Entry<String, StoredSession> entry: entries.subList(0, Math.min(excess, entries.size()))) {
+				if (sessions.remove(entry.getKey(), entry.getValue())) {
+					evictedCount.increment();
+					dirty.add(entry.getKey());
+				}
+			}
+		});
+	}
+
+	private boolean isExpired(StoredSession session, long now) {
+		return (idleTimeout > 0 && now - session.lastAccess > idleTimeout)
+				|| (absoluteTimeout > 0 && now - session.created > absoluteTimeout);
+	}
+
+	// Deletes the files of sessions that are not in memory and have not been accessed for longer than the timeout.
+	// The modification time of a file is the last access time persisted by flush().
+	private void sweepFolder(long now) {
+		long timeout = idleTimeout > 0 ? idleTimeout : absoluteTimeout;
+		if (timeout <= 0) return;
+
+		try (Stream<Path> files = Files.list(folder)) {
+			for (Path file: (Iterable<Path>)files::iterator) {
+				String fileName = file.getFileName().toString();
+				if (!fileName.endsWith(".json")) continue;
+
+				String sessionId = fileName.substring(0, fileName.length() - ".json".length());
+				if (sessions.containsKey(sessionId) || dirty.contains(sessionId)) continue;
+
+				try {
+					if (now - Files.getLastModifiedTime(file).toMillis() > timeout) {
+						Files.deleteIfExists(file);
+						expiredCount.increment();
+					}
+				} catch (IOException e) {}
+			}
+		} catch (IOException e) {
+			System.err.println("Could not sweep sessions folder: %s".formatted(e));
+		}
+	}
+
+	private StoredSession readSession(String sessionId) throws IOException {
+		if (folder == null) return null;
+
+		Path file = sessionFile(sessionId);
+		if (!Files.isRegularFile(file)) return null;
+
+		long lastModified = Files.getLastModifiedTime(file).toMillis();
+		try {
+			JsonElement json = GSON.fromJson(Files.readString(file, StandardCharsets.UTF_8), JsonElement.class);
+			if (json == null || !json.isJsonObject()) return null;
+
+			if (json.getAsJsonObject().has("values") && json.getAsJsonObject().get("values").isJsonObject()) {
+				PersistedSession persisted = GSON.fromJson(json, PersistedSession.class);
+				Map<String, String> values = persisted.values() != null ? persisted.values() : new HashMap<>();
+				return new StoredSession(Collections.unmodifiableMap(values), 0, persisted.created(), lastModified);
+			}
+
+			// files written before the creation time was stored
+			Map<String, String> values = GSON.fromJson(json, MAP_TYPE);
+			return new StoredSession(Collections.unmodifiableMap(values), 0, lastModified, lastModified);
+		} catch (JsonParseException e) {
+			return null;
+		}
+	}
+
+	private void writeSession(String sessionId, StoredSession session) throws IOException {
+		Files.createDirectories(folder);
+
+		long lastAccess = session.lastAccess;
+		Path file = sessionFile(sessionId);
+		Path tempFile = folder.resolve(sessionId + ".tmp");
+		Files.writeString(tempFile, GSON.toJson(new PersistedSession(session.created, session.values)), StandardCharsets.UTF_8);
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		session.persistedAccess = lastAccess;
+	}
+
+	private Path sessionFile(String sessionId) {
+		return folder.resolve(sessionId + ".json");
+	}
+}
@@ -0,0 +1,246 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Parses a multipart/form-data body in a single pass over a reusable buffer. Part bodies are delimited with a
+// Boyer-Moore-Horspool search for the boundary, and large file parts are written to temp files through a FileChannel.
+public class MultipartParser {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_HEADER_LINE = 8 * 1024;
+
+	private InputStream input;
+	private UploadPolicy uploadPolicy;
+	private byte[] delimiter;
+	private int[] shifts;
+	private byte[] buffer;
+	private int position;
+	private int limit;
+	private boolean eof;
+
+	@FunctionalInterface
+	private interface PartSink {
+		void write(byte[] buffer, int offset, int length) throws IOException;
+	}
+
+	public MultipartParser(InputStream input, String boundary, UploadPolicy uploadPolicy) {
+		this.input = input;
+		this.uploadPolicy = uploadPolicy;
+		this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+		this.shifts = createShifts(delimiter);
+		this.buffer = new byte[Math.max(BUFFER_SIZE, delimiter.length * 2)];
+
+		// the first boundary is not preceded by a line break, so one is assumed before the body
+		this.buffer[0] = '\r';
+		this.buffer[1] = '\n';
+		this.limit = 2;
+	}
+
+	public static String getBoundary(String contentType) {
+		String boundary = parseSemicolonSeparated(contentType).get("boundary");
+		return boundary != null && !boundary.isEmpty() ? boundary : null;
+	}
+
+	public PostData parse() throws IOException {
+		Map<String, String> fields = new HashMap<>();
+		Map<String, PostFile> files = new HashMap<>();
+
+		// anything before the first boundary is a preamble and is ignored
+		readPart((b, o, l) -> {});
+
+		try {
+			while (nextPart()) {
+				Map<String, String> headers = readPartHeaders();
+				Map<String, String> contentDisposition = parseSemicolonSeparated(headers.getOrDefault("Content-Disposition", ""));
+
+				String name = contentDisposition.get("name");
+				String fileName = contentDisposition.get("filename");
+				if (name == null) {
+					readPart((b, o, l) -> {});
+				} else if (fileName != null) {
+					files.put(name, readFilePart(fileName, headers.get("Content-Type")));
+				} else {
+					fields.put(name, readFieldPart());
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			uploadPolicy.deleteLater(files.values());
+			throw e;
+		}
+
+		return new PostData(fields, files);
+	}
+
+	// After a boundary, "--" marks the end of the body and a line break the start of another part.
+	private boolean nextPart() throws IOException {
+		if (!ensure(2)) throw new IOException("Unexpected end of multipart body");
+		if (buffer[position] == '-' && buffer[position + 1] == '-') return false;
+
+		readLine();
+		return true;
+	}
+
+	private Map<String, String> readPartHeaders() throws IOException {
+		Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+		String line;
+		while (!(line = readLine()).isEmpty()) {
+			int separator = line.indexOf(':');
+			if (separator > 0)
+				headers.put(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+		}
+
+		return headers;
+	}
+
+	private PostFile readFilePart(String fileName, String contentType) throws IOException {
+		PostFileWriter writer = new PostFileWriter(uploadPolicy);
+		try {
+			readPart(writer::write);
+			return writer.finish(fileName, contentType);
+		} catch (IOException | RuntimeException e) {
+			writer.abort();
+			throw e;
+		}
+	}
+
+	private String readFieldPart() throws IOException {
+		int maxFieldSize = uploadPolicy.getMaxFieldSize();
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		readPart((b, o, l) -> {
+			if (output.size() + l > maxFieldSize)
+				throw new PayloadTooLargeException("Form field larger than %d bytes".formatted(maxFieldSize));
+			output.write(b, o, l);
+		});
+
+		return output.toString(StandardCharsets.UTF_8);
+	}
+
+	// Passes the bytes up to the next boundary to the sink and skips the boundary.
+	private void readPart(PartSink sink) throws IOException {
+		while (true) {
+			ensure(delimiter.length);
+
+			int index = indexOfDelimiter(position, limit);
+			if (index != -1) {
+				if (index > position) sink.write(buffer, position, index - position);
+				position = index + delimiter.length;
+				return;
+			}
+
+			if (eof) throw new IOException("Unexpected end of multipart body");
+
+			// the last bytes may be the beginning of a boundary, so they are kept for the next search
+			int safe = limit - delimiter.length + 1;
+			if (safe > position) {
+				sink.write(buffer, position, safe - position);
+				position = safe;
+			}
+
+			fill();
+		}
+	}
+
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		while (true) {
+			if (!ensure(1)) break;
+
+			byte b = buffer[position++];
+			if (b == '\n') break;
+			if (b != '\r') line.write(b);
+
+			if (line.size() > MAX_HEADER_LINE)
+				throw new IOException("Multipart header line too long");
+		}
+
+		return line.toString(StandardCharsets.UTF_8);
+	}
+
+	private int indexOfDelimiter(int from, int to) {
+		int last = delimiter.length - 1;
+		int i = from;
+		while (i <= to - delimiter.length) {
+			int j = last;
+			while (j >= 0 && buffer[i + j] == delimiter[j])
+				j--;
+
+			if (j < 0) return i;
+
+			i += shifts[buffer[i + last] & 0xff];
+		}
+
+		return -1;
+	}
+
+	// Makes sure that at least count bytes are buffered, unless the body ends first.
+	private boolean ensure(int count) throws IOException {
+		while (limit - position < count) {
+			if (eof) return false;
+			fill();
+		}
+
+		return true;
+	}
+
+	private void fill() throws IOException {
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+
+		if (limit == buffer.length) return;
+
+		int read = input.read(buffer, limit, buffer.length - limit);
+		if (read == -1) eof = true;
+		else limit += read;
+	}
+
+	private static int[] createShifts(byte[] pattern) {
+		int[] shifts = new int[256];
+		for (int i = 0; i < shifts.length; i++)
+			shifts[i] = pattern.length;
+
+		for (int i = 0; i < pattern.length - 1; i++)
+			shifts[pattern[i] & 0xff] = pattern.length - 1 - i;
+
+		return shifts;
+	}
+
+	static Map<String, String> parseSemicolonSeparated(String line) {
+		Map<String, String> values = new HashMap<>();
+
+		for (String part: line.split(";")) {
+			int separator = part.indexOf('=');
+			String key = separator != -1 ? part.substring(0, separator).trim() : "";
+			String value = (separator != -1 ? part.substring(separator + 1) : part).trim();
+
+			values.put(key, value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")
+					? value.substring(1, value.length() - 1) : value);
+		}
+
+		return values;
+	}
+}
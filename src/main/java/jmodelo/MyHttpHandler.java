@@ -15,318 +15,416 @@
  */
 package jmodelo;
 
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
 import java.lang.reflect.Type;
-import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
-import java.util.zip.GZIPOutputStream;
-
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
-import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
-import jmodelo.annotations.HttpPost;
-import jmodelo.annotations.RawInput;
-import jmodelo.annotations.UrlArg;
+import jmodelo.RequestStats.Phase;
 
 public class MyHttpHandler implements HttpHandler{
+	// returned instead of a result when the response has been written already
+	private static final ActionResult SENT = new ActionResult(new byte[0], null, 0);
 
 	private List<String> areas;
-	private String controllersPackage;
-	private ScriptEngine scriptEngine;
+	private ViewEngine viewEngine;
 	private HikariDataSource dataSource;
-
-	public MyHttpHandler(List<String> areas, String controllersPackage, HikariConfig dbConfig) {
+	private ConnectionStats connectionStats;
+	private RequestStats requestStats;
+	private String metricsPath;
+	private StaticFiles staticFiles;
+	private CompressionPolicy compressionPolicy;
+	private SessionStore sessionStore;
+	private UploadPolicy uploadPolicy;
+	private OutputCacheStore outputCache;
+	private RouteTable routeTable;
+
+	public MyHttpHandler(List<String> areas, String controllersPackage, HikariDataSource dataSource, ConnectionStats connectionStats,
+			RequestStats requestStats, String metricsPath, StaticFiles staticFiles, CompressionPolicy compressionPolicy,
+			ViewEngine viewEngine, SessionStore sessionStore, UploadPolicy uploadPolicy, OutputCacheStore outputCache)
+			throws IOException {
 		this.areas = areas;
-		this.controllersPackage = controllersPackage;
-		this.scriptEngine = new ScriptEngineManager().getEngineByName("JavaScript");
-
-		this.dataSource = dbConfig != null ? new HikariDataSource(dbConfig) : null;
+		this.routeTable = RouteTable.scan(controllersPackage, areas);
+
+		this.dataSource = dataSource;
+		this.connectionStats = connectionStats;
+		this.requestStats = requestStats;
+		this.metricsPath = metricsPath;
+		this.staticFiles = staticFiles;
+		this.compressionPolicy = compressionPolicy;
+		this.viewEngine = viewEngine;
+		this.sessionStore = sessionStore;
+		this.uploadPolicy = uploadPolicy;
+		this.outputCache = outputCache;
 	}
 
 	@Override
 	public void handle(HttpExchange exchange) throws IOException {
-		String uri = exchange.getRequestURI().toString().contains("?") ? exchange.getRequestURI().toString().split("\\?")[0] :
-			exchange.getRequestURI().toString();
+		String path = exchange.getRequestURI().getRawPath();
+		if (path.equals(metricsPath)) {
+			sendContent(exchange, metrics(), null);
+			return;
+		}
+
+		RequestTimings timings = new RequestTimings();
+		try {
+			if (path.contains(".")) {
+				timings.setRoute(requestStats.getStaticFiles());
+				sendContent(exchange, readFile(exchange), timings);
+			} else {
+				ActionResult result = invokeAction(exchange, null, timings);
+				if (result != SENT) sendContent(exchange, result, timings);
+			}
+		} finally {
+			timings.finish();
+			requestStats.record(timings);
+		}
+	}
 
-		sendContent(exchange, uri.contains(".") ? readFile(exchange) : invokeAction(exchange, null));
+	private ActionResult metrics() {
+		String content = PrometheusMetrics.format(requestStats, connectionStats, dataSource, viewEngine, sessionStore,
+				outputCache);
+		return new ActionResult(content.getBytes(StandardCharsets.UTF_8), "text/plain; version=0.0.4; charset=utf-8", 200);
 	}
 
 	private ActionResult readFile(HttpExchange exchange) throws IOException {
-		String path = exchange.getRequestURI().toString();
+		String path = exchange.getRequestURI().getPath();
 		if (path.contains(".."))
 			return notFound404();
 
-		File f = new File("www%s".formatted(path));
-
-		String[] fileNameParts = f.getName().split("\\.");
-		String mimeType = getMimeType(fileNameParts[fileNameParts.length-1]);
-
-		return f.exists() ? new ActionResult(Files.readAllBytes(f.toPath()), mimeType, 200) : notFound404();
-	}
-
-	private ActionResult invokeAction(HttpExchange exchange, PathInfo pathInfo) 
-			throws IOException {
-		Cookies cookies = null;
-		Session session = null;
-		PostData postData = null;
-		ActionResult result = null;
-
-		try (Connection dbConnection = dataSource != null ? dataSource.getConnection() : null){
-			pathInfo = pathInfo == null ? getPathInfo(exchange) : pathInfo;
-			Controller controller = (Controller)pathInfo.controllerClass().getConstructors()[0].newInstance();
-			controller.init(scriptEngine, exchange, cookies = new Cookies(exchange), 
-					session = new Session(cookies), pathInfo.areaName(), dbConnection);
+		StaticFile file = staticFiles.get(path);
+		if (file == null)
+			return notFound404();
 
-			Map<String, String> params = exchange.getRequestURI().toString().contains("?") 
-					? parseParameters(exchange.getRequestURI().toString().split("\\?")[1]) : new HashMap<>();
+		Map<String, String> headers = file.headers(staticFiles.getCacheControl());
+		if (file.isNotModified(exchange.getRequestHeaders()))
+			return new ActionResult(new byte[0], file.mimeType(), 304, headers, null);
 
-			postData = handlePostRequest(exchange);
+		ByteRange range = file.matchesIfRange(exchange.getRequestHeaders().getFirst("If-Range")) 
+				? ByteRange.parse(exchange.getRequestHeaders().getFirst("Range"), file.size()) : null;
 
-			MethodWithParameters method = getMethodWithParameters(exchange.getRequestMethod(), pathInfo.controllerClass(), 
-					pathInfo.actionName(), params, pathInfo.urlArgs(), postData);
+		if (range == ByteRange.UNSATISFIABLE) {
+			headers.put("Content-Range", "bytes */%d".formatted(file.size()));
+			return new ActionResult(new byte[0], file.mimeType(), 416, headers, null);
+		}
 
-			result = method.parameters() == null ? (ActionResult)method.method().invoke(controller) :
-				(ActionResult)method.method().invoke(controller, method.parameters());
-		}catch (InvocationTargetException e) {
-			result = handleError(e.getCause(), exchange);
-		}catch (Exception e) {
-			result = handleError(e, exchange);
+		if (range != null) {
+			headers.put("Content-Range", range.contentRange(file.size()));
+			return new ActionResult(x -> file.writeTo(x, range.start(), range.length()), range.length(), file.mimeType(), 206, headers);
 		}
 
-		if (session != null) session.storeSession();
+		if (file.isCached())
+			return new ActionResult(file.content(), file.mimeType(), 200, headers, file.gzipContent());
 
-		if (postData != null) {
-			for (String key: postData.files().keySet()) {
-				postData.files().get(key).tempFile().delete();
-			}
+		if (file.gzipFile() != null && acceptsGzip(exchange)) {
+			headers.put("Content-Encoding", "gzip");
+			return new ActionResult(x -> file.writeGzipTo(x), file.gzipFile().length(), file.mimeType(), 200, headers);
 		}
 
-		return result;
+		return new ActionResult(x -> file.writeTo(x, 0, file.size()), file.size(), file.mimeType(), 200, headers);
 	}
 
-	private Optional<Class<?>> loadController(String areaName, String controllerName) {
-		Class<?> controllerClass = null;
+	private ActionResult invokeAction(HttpExchange exchange, PathInfo pathInfo, RequestTimings timings) 
+			throws IOException {
+		boolean errorPage = pathInfo != null;
+		Route route;
 		try {
-			controllerName = controllerName.substring(0, 1).toUpperCase() + (controllerName.length() > 1 ?
-					controllerName.substring(1) : "");
-			controllerClass = Class.forName("%s%s.%sController"
-					.formatted(controllersPackage, areaName != null ? ("." + areaName.toLowerCase()) : "", controllerName));
-		} catch (ClassNotFoundException e) {}
+			long routingStart = System.nanoTime();
+			pathInfo = pathInfo == null ? getPathInfo(exchange) : pathInfo;
+			route = getRoute(exchange.getRequestMethod(), pathInfo);
+			if (!errorPage) {
+				timings.addSince(Phase.ROUTING, routingStart);
+				timings.setRoute(requestStats.getRoute(route));
+			}
+		} catch (Exception e) {
+			return handleError(e, exchange, timings);
+		}
 
-		return Optional.ofNullable(controllerClass);
-	}
+		Map<String, String> params = FormParser.parseQuery(exchange.getRequestURI().getRawQuery());
 
-	private MethodWithParameters getMethodWithParameters(String requestMethod, Class<?> controllerClass, String actionName,
-			Map<String, String> params, List<String> urlArgs, PostData postData) throws NoSuchMethodException, SecurityException {
-		List<Method> methods = Arrays.stream(controllerClass.getDeclaredMethods())
-				.filter(x -> x.getName().equals(actionName)).collect(Collectors.toList());
+		if (route.outputCache() == null || errorPage || !exchange.getRequestMethod().equals("GET"))
+			return runAction(exchange, route, pathInfo, params, timings, false);
 
-		Method method = methods.stream()
-				.filter(x -> (requestMethod.equals("POST") && x.getAnnotation(HttpPost.class) != null) 
-						|| (requestMethod.equals("GET") && x.getAnnotation(HttpPost.class) == null))
-				.findFirst().orElseThrow(() -> new NoSuchMethodException(actionName));
+		String key = OutputCacheStore.key(route, pathInfo.urlArgs(), params, exchange.getRequestHeaders(),
+				route.outputCache().varyByCookie().length > 0 ? new Cookies(exchange) : null);
 
-		if (method.getAnnotation(RawInput.class) == null) {
-			params.keySet().forEach(x -> params.put(x, escapeInput(params.get(x))));
-			urlArgs = urlArgs.stream().map(x -> escapeInput(x)).collect(Collectors.toList());
+		OutputCacheStore.Entry entry = outputCache.get(route, key);
+		if (entry != null) {
+			if (entry.state(System.currentTimeMillis()) != OutputCacheStore.State.FRESH && entry.refreshing().compareAndSet(false, true))
+				refreshLater(new DetachedExchange(exchange), route, pathInfo, new HashMap<>(params), key, entry);
 
-			if (postData != null)
-				postData.fields().keySet()
-				.forEach(x -> postData.fields().put(x, escapeInput(postData.fields().get(x))));		
+			return cachedResult(exchange, entry);
 		}
 
-		List<Object> paramObjs = method.getParameterCount() > 0 ? getMethodParameters(method, params, urlArgs, postData) : null;
+		// identical requests arriving while the action runs wait for its response instead of running it again
+		CompletableFuture<OutputCacheStore.Entry> flight = new CompletableFuture<>();
+		CompletableFuture<OutputCacheStore.Entry> running = outputCache.joinFlight(key, flight);
+		if (running == null)
+			return runCachedAction(exchange, route, pathInfo, params, key, timings, flight);
+
+		long waitStart = System.nanoTime();
+		OutputCacheStore.Entry shared = outputCache.awaitFlight(running);
+		timings.addSince(Phase.COALESCING, waitStart);
 
-		return new MethodWithParameters(method, paramObjs != null ? paramObjs.toArray() : null);
+		return shared != null ? cachedResult(exchange, shared) : runCachedAction(exchange, route, pathInfo, params, key, timings, null);
 	}
 
-	private List<Object> getMethodParameters(Method method, Map<String, String> params, List<String> urlArgs, PostData postData) {
-		List<Object> paramObjs = new ArrayList<>();
-		for (Parameter param: method.getParameters()) {
-			UrlArg urlArgAnnotation = null;
-			String paramValue = (urlArgAnnotation = param.getAnnotation(UrlArg.class)) != null && urlArgAnnotation.value() < urlArgs.size()
-					? urlArgs.get(urlArgAnnotation.value()) : params.get(param.getName());
-
-			if (param.getType() == PostData.class) 
-				paramObjs.add(postData);
-			else if (param.getType() == GetParams.class)
-				paramObjs.add(new GetParams(params));
-			else if (paramValue == null) 
-				paramObjs.add(null);
-			else if (param.getType() == int.class)
-				paramObjs.add(Integer.parseInt(paramValue));
-			else if (param.getType() == double.class)
-				paramObjs.add(Double.parseDouble(paramValue));
-			else if (param.getType() == String.class)
-				paramObjs.add(paramValue);
+	// Runs the action and stores its response. The requests waiting for flight get the stored response, or run the
+	// action themselves when it could not be cached.
+	private ActionResult runCachedAction(HttpExchange exchange, Route route, PathInfo pathInfo, Map<String, String> params,
+			String key, RequestTimings timings, CompletableFuture<OutputCacheStore.Entry> flight) throws IOException {
+		OutputCacheStore.Entry cached = null;
+		try {
+			long generation = outputCache.getGeneration(route);
+			ActionResult result = runAction(exchange, route, pathInfo, params, timings, true);
+			if (timings.isFailed() || result == SENT) return result;
+
+			try {
+				cached = outputCache.put(route, key, generation, result, exchange.getResponseHeaders());
+			} catch (IOException | RuntimeException e) {
+				return handleError(e, exchange, timings);
+			}
+
+			return cached != null ? cached.result() : result;
+		} finally {
+			if (flight != null) outputCache.completeFlight(key, flight, cached);
 		}
+	}
 
-		return paramObjs;
+	// The headers stored with a cached response are the ones its action set on the exchange.
+	private ActionResult cachedResult(HttpExchange exchange, OutputCacheStore.Entry entry) {
+		entry.headers().forEach((name, values) -> exchange.getResponseHeaders().put(name, new ArrayList<>(values)));
+
+		return entry.result();
 	}
 
-	private PostData handlePostRequest(HttpExchange exchange) throws IOException {
-		if (exchange.getRequestMethod().equals("POST")) {
-			List<String> contentTypes = exchange.getRequestHeaders().get("Content-Type");
-			String contentType = contentTypes != null && !contentTypes.isEmpty() ? contentTypes.getFirst() : null;
+	// The stale response keeps being served until the refreshed one is stored. A refresh that stored nothing, because it
+	// failed or its response could not be cached, is tried again on the next request.
+	private void refreshLater(HttpExchange exchange, Route route, PathInfo pathInfo, Map<String, String> params, String key,
+			OutputCacheStore.Entry entry) {
+		Thread.ofVirtual().start(() -> {
+			// a request that found the entry expired is computing the response already
+			CompletableFuture<OutputCacheStore.Entry> flight = new CompletableFuture<>();
+			if (outputCache.joinFlight(key, flight) != null) {
+				entry.refreshing().set(false);
+				return;
+			}
 
-			if (contentType == null) return null; 
+			try {
+				runCachedAction(exchange, route, pathInfo, params, key, new RequestTimings(), flight);
+			} catch (IOException | RuntimeException e) {}
 
-			if (contentType.startsWith("multipart/form-data"))
-				return parseMultipart(exchange.getRequestBody(), contentType.split("boundary=")[1]);
+			// the flight is completed with the stored response, or null when nothing was stored
+			if (flight.getNow(null) != null) outputCache.recordRefresh();
+			else entry.refreshing().set(false);
+		});
+	}
 
-			if (contentType.startsWith("application/x-www-form-urlencoded"))
-				return new PostData(parseParameters(readLine(exchange.getRequestBody())), new HashMap<>());
+	// Streamed bodies are written before the database connection is closed, the session unlocked and the uploads
+	// deleted, so they can still use them. With bufferStream, they are written to a buffer for the output cache instead.
+	private ActionResult runAction(HttpExchange exchange, Route route, PathInfo pathInfo, Map<String, String> params,
+			RequestTimings timings, boolean bufferStream) throws IOException {
+		Cookies cookies = null;
+		Session session = null;
+		PostData postData = null;
+		ActionResult result = null;
 
-			if (contentType.startsWith("application/json"))
-				return parseJson(exchange.getRequestBody());
+		LazyConnection dbConnection = new LazyConnection(dataSource, connectionStats);
+		try {
+			try {
+				Controller controller = route.invoker().newController();
+				controller.init(viewEngine, exchange, cookies = new Cookies(exchange), 
+						session = new Session(cookies, sessionStore, route.exclusiveSession()), pathInfo.areaName(), dbConnection);
+				controller.setRequestTimings(timings);
+				controller.setOutputCache(outputCache);
+
+				postData = handlePostRequest(exchange);
+
+				List<String> urlArgs = route.rawInput() ? pathInfo.urlArgs() : escapeInput(params, pathInfo.urlArgs(), postData);
+
+				long actionStart = System.nanoTime();
+				try {
+					result = route.invoker().invoke(controller, params, urlArgs, postData);
+				} finally {
+					timings.addSince(Phase.ACTION, actionStart);
+				}
+			}catch (InvocationTargetException e) {
+				result = handleError(e.getCause(), exchange, timings);
+			}catch (Exception e) {
+				result = handleError(e, exchange, timings);
+			}
 
-			PostFile postFile = new PostFile(null, contentType, readBytesAsFile(exchange.getRequestBody()));
-			return new PostData(new HashMap<>(), Map.of("file", postFile));
-		}
+			if (result.bodyWriter() == null)
+				closeConnection(dbConnection);
 
-		return null;
-	}
+			// the session is saved before the response headers are sent, since saving may set a cookie
+			if (session != null) {
+				if (session.getLoadNanos() >= 0)
+					timings.add(Phase.SESSION_LOAD, session.getLoadNanos());
+
+				long storeStart = System.nanoTime();
+				try {
+					session.save();
+				} catch (IOException | RuntimeException e) {
+					result = handleError(e, exchange, timings);
+				}
 
-	private PostData parseMultipart(InputStream input, String boundary) throws IOException {
-		Map<String, String> fields = new HashMap<>();
-		Map<String, PostFile> files = new HashMap<>();
+				if (session.getLoadNanos() >= 0)
+					timings.addSince(Phase.SESSION_STORE, storeStart);
+			}
 
-		String line;
-		while(!(line = readLine(input)).equals("--")) {
-			if (line.isBlank()) continue;
+			if (result.bodyWriter() != null && bufferStream)
+				result = bufferResult(exchange, result, timings);
 
-			Map<String, String> headerMap = parsePartHeader(input);
-			Map<String, String> contentDisposition = parseSemicolonSeparated(headerMap.get("Content-Disposition"));
+			if (result.bodyWriter() != null)
+				result = sendStreamed(exchange, result, timings);
+		} finally {
+			closeConnection(dbConnection);
+			if (session != null) session.unlock();
+			if (postData != null) uploadPolicy.deleteLater(postData.files().values());
 
-			String name = contentDisposition.get("name");
-			String fileName = contentDisposition.get("filename");
-			if (name == null) continue;
-			if (fileName != null)
-				files.put(name, new PostFile(fileName, headerMap.get("Content-Type"), readBytesUntilBoundaryAsFile(input, boundary)));
-			else
-				fields.put(name, readLine(input));
+			if (dbConnection.getAcquireNanos() >= 0)
+				timings.add(Phase.CONNECTION, dbConnection.getAcquireNanos());
 		}
 
-		return new PostData(fields, files);
+		return result;
 	}
 
-	private Map<String, String> parsePartHeader(InputStream input) throws IOException {
-		Map<String, String> values = new HashMap<>();
+	// A body too large for the output cache is sent while it is written, and the response is not cached.
+	private ActionResult bufferResult(HttpExchange exchange, ActionResult result, RequestTimings timings) throws IOException {
+		try {
+			ActionResult buffered = outputCache.buffer(result, () -> {
+				addHeaders(exchange, result);
+				return openStream(exchange, result);
+			});
+
+			return buffered != null ? buffered : SENT;
+		} catch (IOException | RuntimeException e) {
+			// as in sendStreamed, an error page cannot be sent after the headers
+			if (exchange.getResponseCode() != -1) {
+				timings.setFailed();
+				throw e;
+			}
 
-		String line;
-		while ( !(line = readLine(input)).isBlank() ) {
-			String[] lineParts = line.split(":");
-			values.put(lineParts[0], lineParts[1]);
+			return handleError(e, exchange, timings);
 		}
-
-		return values;
 	}
 
-	private File readBytesUntilBoundaryAsFile(InputStream input, String boundary) throws IOException {
-		boundary = "\r\n--" + boundary;
-		File f = new File("temp/%s.temp".formatted(UUID.randomUUID().toString()));
-		try (BufferedOutputStream fout = new BufferedOutputStream(new FileOutputStream(f, false))) {
-			int bIndex = 0;
-			byte[] temp = new byte[boundary.length()];
-			int b;
-			while ( (b = input.read()) != -1) {
-				if (b == boundary.getBytes()[bIndex]) {
-					temp[bIndex] = (byte)b;
-					bIndex++;
-
-					if (boundary.length() == bIndex) {
-						fout.flush();
-						return f;
-					}
-				}else if (bIndex > 0){
-					fout.write(temp, 0, bIndex);
-					bIndex = 0;
-					fout.write(b);
-				}else
-					fout.write(b);
-			}
+	// Once the headers are sent an error page cannot be sent anymore, the connection is dropped instead so that the client
+	// sees an incomplete response.
+	private ActionResult sendStreamed(HttpExchange exchange, ActionResult result, RequestTimings timings) throws IOException {
+		try {
+			sendContent(exchange, result, timings);
+		} catch (IOException | RuntimeException e) {
+			timings.setFailed();
+			throw e;
 		}
 
-		return null;
+		return SENT;
 	}
 
-	private String readLine(InputStream input) throws IOException {
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-		int b;
-		while ((b = input.read()) != '\n' && b != -1) {
-			if (b == '\r') continue;
-			baos.write(b);
+	private void closeConnection(LazyConnection dbConnection) {
+		try {
+			dbConnection.close();
+		} catch (SQLException e) {
+			System.err.println("Could not close database connection: %s".formatted(e));
 		}
-
-		return new String(baos.toByteArray(), StandardCharsets.UTF_8);
 	}
 
-	private Map<String, String> parseSemicolonSeparated(String line) {
-		Map<String, String> values = new HashMap<>();
+	private Optional<Class<?>> loadController(String areaName, String controllerName) {
+		if (controllerName.isEmpty()) return Optional.empty();
 
-		String[] parts = line.contains(";") ? line.split(";") : new String[] {line};
-		Arrays.stream(parts).map(x -> x.contains("=") ? x.split("=") : new String[] {"", x})
-		.forEach(x -> values.put(x[0].trim(), x[1].startsWith("\"") && x[1].endsWith("\"") 
-				? x[1].substring(1, x[1].length()-1) : x[1]));
+		return routeTable.getController(areaName, controllerName);
+	}
 
-		return values;
+	Route getRoute(String requestMethod, PathInfo pathInfo) throws NoSuchMethodException {
+		return routeTable.getRoute(pathInfo.controllerClass(), requestMethod, pathInfo.actionName())
+				.orElseThrow(() -> new NoSuchMethodException(pathInfo.actionName()));
 	}
 
-	private Map<String, String> parseParameters(String query) {
-		Map<String, String> parameters = new HashMap<>();
-		query = URLDecoder.decode(query, StandardCharsets.UTF_8);
+	private List<String> escapeInput(Map<String, String> params, List<String> urlArgs, PostData postData) {
+		params.keySet().forEach(x -> params.put(x, escapeInput(params.get(x))));
 
-		String[] pairs = query.contains("&") ? query.split("&") : new String[] {query};
-		Arrays.stream(pairs).map(x -> x.split("=")).forEach(x -> parameters.put(x[0], x.length > 1 ? x[1] : ""));
+		if (postData != null)
+			postData.fields().keySet()
+			.forEach(x -> postData.fields().put(x, escapeInput(postData.fields().get(x))));
 
-		return parameters;
+		return urlArgs.stream().map(x -> escapeInput(x)).collect(Collectors.toList());
 	}
 
-	private File readBytesAsFile(InputStream input) throws IOException {
-		byte[] buf = readBytes(input);
+	private PostData handlePostRequest(HttpExchange exchange) throws IOException {
+		if (exchange.getRequestMethod().equals("POST")) {
+			List<String> contentTypes = exchange.getRequestHeaders().get("Content-Type");
+			String contentType = contentTypes != null && !contentTypes.isEmpty() ? contentTypes.getFirst() : null;
+
+			if (contentType == null) return null; 
+
+			String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+			if (contentLength != null && Long.parseLong(contentLength.trim()) > uploadPolicy.getMaxRequestSize())
+				throw new PayloadTooLargeException("Request body larger than %d bytes".formatted(uploadPolicy.getMaxRequestSize()));
 
-		File f = new File("temp/%s.temp".formatted(UUID.randomUUID().toString()));
-		FileOutputStream output = new FileOutputStream(f, false);
+			InputStream body = uploadPolicy.limitRequestBody(exchange.getRequestBody());
 
-		output.write(buf);
-		output.close();
+			if (contentType.startsWith("multipart/form-data")) {
+				String boundary = MultipartParser.getBoundary(contentType);
+				if (boundary == null) throw new IOException("Missing multipart boundary");
+
+				return new MultipartParser(body, boundary, uploadPolicy).parse();
+			}
 
-		return f;
+			if (contentType.startsWith("application/x-www-form-urlencoded"))
+				return new PostData(FormParser.parseQuery(new String(readField(body), StandardCharsets.UTF_8).trim()), new HashMap<>());
+
+			if (contentType.startsWith("application/json"))
+				return parseJson(body);
+
+			return new PostData(new HashMap<>(), Map.of("file", readPostFile(body, contentType)));
+		}
+
+		return null;
+	}
+
+	private PostFile readPostFile(InputStream input, String contentType) throws IOException {
+		PostFileWriter writer = new PostFileWriter(uploadPolicy);
+		try {
+			byte[] buf = new byte[64 * 1024];
+			int read;
+			while ((read = input.read(buf)) != -1)
+				writer.write(buf, 0, read);
+
+			return writer.finish(null, contentType);
+		} catch (IOException | RuntimeException e) {
+			writer.abort();
+			throw e;
+		}
 	}
 
-	private byte[] readBytes(InputStream input) throws IOException {
+	private byte[] readField(InputStream input) throws IOException {
 		ByteArrayOutputStream output = new ByteArrayOutputStream();
 
 		byte[] buf = new byte[4096];
 		int b;
 		while ( (b = input.read(buf)) != -1 ) {
+			if (output.size() + b > uploadPolicy.getMaxFieldSize())
+				throw new PayloadTooLargeException("Request body larger than %d bytes".formatted(uploadPolicy.getMaxFieldSize()));
 			output.write(buf, 0, b);
 		}
 
@@ -334,44 +432,118 @@ public class MyHttpHandler implements HttpHandler{
 	}
 
 	private PostData parseJson(InputStream input) throws IOException {
-		String json = new String(readBytes(input), StandardCharsets.UTF_8);
+		String json = new String(readField(input), StandardCharsets.UTF_8);
 		Type mapType = new TypeToken<Map<String, String>>(){}.getType();
 		Map<String, String> fields = new Gson().fromJson(json, mapType);
 
 		return new PostData(fields, new HashMap<>());
 	}
 
-	private void sendContent(HttpExchange exchange, ActionResult result) throws IOException {
-		exchange.getResponseHeaders().add("Content-Type", result.mimeType());
+	private void addHeaders(HttpExchange exchange, ActionResult result) {
+		Headers responseHeaders = exchange.getResponseHeaders();
+		responseHeaders.add("Content-Type", result.mimeType());
+		result.headers().forEach((name, value) -> responseHeaders.add(name, value));
+	}
+
+	private void sendContent(HttpExchange exchange, ActionResult result, RequestTimings timings) throws IOException {
+		Headers responseHeaders = exchange.getResponseHeaders();
+		addHeaders(exchange, result);
 
-		OutputStream output;
-		List<String> acceptEncoding;
-		if ((acceptEncoding = exchange.getRequestHeaders().get("Accept-Encoding")) != null &&
-				acceptEncoding.stream().anyMatch(x -> x.contains("gzip"))) {
-			exchange.getResponseHeaders().add("Content-Encoding", "gzip");
-			exchange.sendResponseHeaders(result.responseCode(), 0);
-			output = new GZIPOutputStream (exchange.getResponseBody());
-		}else {
-			exchange.sendResponseHeaders(result.responseCode(), result.contentBuffer().length);
-			output = exchange.getResponseBody();
+		if (result.responseCode() == 304) {
+			exchange.sendResponseHeaders(304, -1);
+			exchange.close();
+			return;
+		}
+
+		if (result.bodyWriter() != null) {
+			sendStream(exchange, result);
+			return;
 		}
 
-		output.write(result.contentBuffer());
-		output.flush();
+		byte[] content = result.contentBuffer();
+		boolean compress = result.gzipBuffer() != null || compressionPolicy.shouldCompress(result.mimeType(), content.length);
+		if (compress && !responseHeaders.containsKey("Vary"))
+			responseHeaders.add("Vary", "Accept-Encoding");
+
+		if (content.length == 0) {
+			exchange.sendResponseHeaders(result.responseCode(), -1);
+			exchange.close();
+			return;
+		}
+
+		if (compress && acceptsGzip(exchange)) {
+			if (result.gzipBuffer() != null) {
+				content = result.gzipBuffer();
+			} else {
+				long compressionStart = System.nanoTime();
+				content = compressionPolicy.compress(content);
+				if (timings != null) timings.addSince(Phase.COMPRESSION, compressionStart);
+			}
+			responseHeaders.add("Content-Encoding", "gzip");
+		}
+
+		exchange.sendResponseHeaders(result.responseCode(), content.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(content);
+		}
+	}
+
+	private void sendStream(HttpExchange exchange, ActionResult result) throws IOException {
+		// the body is only closed when it was written completely, so that a failed response is not ended as if complete
+		OutputStream output = openStream(exchange, result);
+		result.bodyWriter().writeTo(output);
 		output.close();
 	}
 
+	// Sends the headers of a streamed response and returns the stream its body is written to.
+	private OutputStream openStream(HttpExchange exchange, ActionResult result) throws IOException {
+		Headers responseHeaders = exchange.getResponseHeaders();
+
+		boolean compress = result.responseCode() == 200 && !responseHeaders.containsKey("Content-Encoding")
+				&& compressionPolicy.shouldCompress(result.mimeType(), result.contentLength());
+		if (compress && !responseHeaders.containsKey("Vary"))
+			responseHeaders.add("Vary", "Accept-Encoding");
+
+		if (compress && acceptsGzip(exchange)) {
+			responseHeaders.add("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(result.responseCode(), 0);
+
+			return compressionPolicy.compress(exchange.getResponseBody());
+		}
+
+		exchange.sendResponseHeaders(result.responseCode(), result.contentLength() < 0 ? 0 
+				: result.contentLength() == 0 ? -1 : result.contentLength());
+
+		return exchange.getResponseBody();
+	}
+
+	private boolean acceptsGzip(HttpExchange exchange) {
+		List<String> acceptEncoding = exchange.getRequestHeaders().get("Accept-Encoding");
+
+		return acceptEncoding != null && acceptEncoding.stream().anyMatch(x -> x.contains("gzip"));
+	}
+
 	private ActionResult notFound404() throws IOException {
 		String content = "<h1>404 - Not Found</h1>";
 		return new ActionResult(content.getBytes(), "text/html", 404);
 	}
 
+	private ActionResult payloadTooLarge413() throws IOException {
+		String content = "<h1>413 - Payload Too Large</h1>";
+		return new ActionResult(content.getBytes(), "text/html", 413);
+	}
+
 	private ActionResult otherError() throws IOException {
 		String content = "<h1>400 - Bad Request</h1>";
 		return new ActionResult(content.getBytes(), "text/html", 400);
 	}
 
-	private ActionResult handleError(Throwable e, HttpExchange exchange) throws IOException {
+	private ActionResult handleError(Throwable e, HttpExchange exchange, RequestTimings timings) throws IOException {
+		timings.setFailed();
+
+		if (e instanceof PayloadTooLargeException)
+			return payloadTooLarge413();
+
 		if (MVC.DEBUG) {
 			StringBuilder sb = new StringBuilder("%s<br>".formatted(e.toString()));
 			for(var st: e.getStackTrace())
@@ -386,14 +558,13 @@ public class MyHttpHandler implements HttpHandler{
 		boolean is404 = e instanceof ClassNotFoundException || e instanceof NoSuchMethodException;
 		Class<?> errorClass = loadController(null, "Error").orElse(null);
 		if (errorClass != null) 
-			return invokeAction(exchange, new PathInfo(null, is404 ? "notFound" : "otherError", new ArrayList<String>(), errorClass));
+			return invokeAction(exchange, new PathInfo(null, is404 ? "notFound" : "otherError", new ArrayList<String>(), errorClass), timings);
 		
 		return is404 ? notFound404() : otherError();
 	}
 
-	private PathInfo getPathInfo(HttpExchange exchange) throws ClassNotFoundException {
-		String[] requestParts = exchange.getRequestURI().toString().contains("?") 
-				? exchange.getRequestURI().toString().split("\\?")[0].split("/") : exchange.getRequestURI().toString().split("/");
+	PathInfo getPathInfo(HttpExchange exchange) throws ClassNotFoundException {
+		String[] requestParts = exchange.getRequestURI().getRawPath().split("/");
 
 		int idx = 1;
 		String areaName = requestParts.length > idx && areas != null && areas.contains(requestParts[idx]) ?
@@ -423,28 +594,4 @@ public class MyHttpHandler implements HttpHandler{
 
 		return input;
 	}
-
-	private String getMimeType(String extension) {
-		return switch (extension) {
-		case "html", "htm" -> "text/html";
-		case "txt" -> "text/plain";
-		case "js" -> "text/javascript";
-		case "css" -> "text/css";
-
-		case "exe" -> "application/octet-stream";
-		case "doc" -> "application/msword";
-		case "pdf" -> "application/pdf";
-
-		case "mp4" -> "video/mp4";
-
-		case "jpeg", "jpg" -> "image/jpeg";
-		case "gif" -> "image/gif";
-		case "ico" -> "image/vnd.microsoft.icon";
-		case "png" -> "image/png";
-		case "svg" -> "image/svg+xml";
-		case "webp" -> "image/webp";
-
-		default -> "text/plain";
-		};
-	}
 }
@@ -0,0 +1,372 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.Headers;
+
+import jmodelo.annotations.OutputCache;
+
+// Bounded in-memory cache of responses of actions marked with OutputCache. Responses are kept with their gzip
+// version, so cache hits are neither rendered nor compressed again. Invalidating a route bumps its generation instead of
+// searching the cache, and entries of an older generation are treated as missing. Invalidating everything bumps an
+// epoch that is added to every generation. On a miss, concurrent requests for the
+// same key wait for the one that runs the action and share its response instead of running it as well.
+public class OutputCacheStore {
+	private StripedCache<String, Entry> entries;
+	private AtomicLong epoch;
+	private Map<String, AtomicLong> generations;
+	private Map<Method, AtomicLong> routeGenerations;
+	private Map<String, CompletableFuture<Entry>> inFlight;
+	private CompressionPolicy compressionPolicy;
+	private int maxEntrySize;
+	private long coalesceTimeout;
+
+	private LongAdder hits;
+	private LongAdder staleHits;
+	private LongAdder misses;
+	private LongAdder refreshes;
+	private LongAdder coalesced;
+	private LongAdder coalesceTimeouts;
+
+	enum State { FRESH, STALE, EXPIRED }
+
+	// Sends the headers of a streamed response that is too large to cache and returns the stream for its body.
+	interface Overflow {
+		OutputStream open() throws IOException;
+	}
+
+	// The headers the action set on the exchange are kept apart from the result, with all their values.
+	record Entry(ActionResult result, Map<String, List<String>> headers, long generation, long expires, long staleUntil,
+			AtomicBoolean refreshing) {
+
+		State state(long now) {
+			return now < expires ? State.FRESH : now < staleUntil ? State.STALE : State.EXPIRED;
+		}
+	}
+
+	public OutputCacheStore(CompressionPolicy compressionPolicy) {
+		this(compressionPolicy, 10_000, 64 * 1024 * 1024);
+	}
+
+	public OutputCacheStore(CompressionPolicy compressionPolicy, int maxEntries, long maxSize) {
+		this.compressionPolicy = compressionPolicy;
+		this.maxEntrySize = 1024 * 1024;
+		this.coalesceTimeout = TimeUnit.SECONDS.toMillis(5);
+		this.entries = new StripedCache<>(maxEntries, maxSize, x -> x.result().contentBuffer().length
+				+ (x.result().gzipBuffer() != null ? x.result().gzipBuffer().length : 0));
+		this.epoch = new AtomicLong();
+		this.generations = new ConcurrentHashMap<>();
+		this.routeGenerations = new ConcurrentHashMap<>();
+		this.inFlight = new ConcurrentHashMap<>();
+
+		this.hits = new LongAdder();
+		this.staleHits = new LongAdder();
+		this.misses = new LongAdder();
+		this.refreshes = new LongAdder();
+		this.coalesced = new LongAdder();
+		this.coalesceTimeouts = new LongAdder();
+	}
+
+	// Drops the cached responses of one action of a controller, for every url argument and vary value.
+	public void invalidate(Class<? extends Controller> controllerClass, String actionName) {
+		generation(routeName(controllerClass, actionName)).incrementAndGet();
+	}
+
+	// The epoch is bumped before clearing, so a response that is being computed meanwhile is stored as outdated.
+	public void invalidateAll() {
+		epoch.incrementAndGet();
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public int getMaxEntrySize() {
+		return maxEntrySize;
+	}
+
+	// Larger responses are not cached, so a few big pages cannot push out everything else.
+	public void setMaxEntrySize(int maxEntrySize) {
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	public long getCoalesceTimeout() {
+		return coalesceTimeout;
+	}
+
+	// A request that waited this many milliseconds for a response of another request runs the action itself.
+	public void setCoalesceTimeout(long coalesceTimeout) {
+		this.coalesceTimeout = coalesceTimeout;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getStaleHits() {
+		return staleHits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getRefreshes() {
+		return refreshes.sum();
+	}
+
+	public long getCoalesced() {
+		return coalesced.sum();
+	}
+
+	public long getCoalesceTimeouts() {
+		return coalesceTimeouts.sum();
+	}
+
+	public int getInFlight() {
+		return inFlight.size();
+	}
+
+	// Returns null on a miss. Stale entries are returned as well, the caller decides whether to refresh them.
+	Entry get(Route route, String key) {
+		Entry entry = entries.get(key);
+		if (entry == null || entry.generation() != getGeneration(route)) {
+			misses.increment();
+			return null;
+		}
+
+		switch (entry.state(System.currentTimeMillis())) {
+		case FRESH:
+			hits.increment();
+			return entry;
+		case STALE:
+			staleHits.increment();
+			return entry;
+		default:
+			misses.increment();
+			return null;
+		}
+	}
+
+	// Writes a streamed 200 response to a buffer so that it can be cached. The body can only be written once, so when it
+	// turns out larger than maxEntrySize, the bytes buffered so far and the rest of it go to the stream opened by
+	// overflow instead, and null is returned.
+	ActionResult buffer(ActionResult result, Overflow overflow) throws IOException {
+		if (result.responseCode() != 200 || result.bodyWriter() == null || result.contentLength() > maxEntrySize)
+			return result;
+
+		CappedBuffer buffer = new CappedBuffer(result.contentLength() > 0 ? (int)result.contentLength() : 8192,
+				maxEntrySize, overflow);
+		result.bodyWriter().writeTo(buffer);
+		if (buffer.overflowed()) {
+			buffer.finish();
+			return null;
+		}
+
+		return new ActionResult(buffer.toByteArray(), result.mimeType(), 200, result.headers(), null);
+	}
+
+	// Responses other than 200, streamed, larger than maxEntrySize or that set cookies are not cached and null is
+	// returned. The stored entry includes the headers set on the exchange. The generation is read before the action runs,
+	// so a response computed while its route was being invalidated is stored as outdated.
+	Entry put(Route route, String key, long generation, ActionResult result, Headers responseHeaders) throws IOException {
+		if (result.responseCode() != 200 || result.contentBuffer() == null || result.contentBuffer().length > maxEntrySize
+				|| responseHeaders.containsKey("Set-Cookie"))
+			return null;
+
+		Map<String, List<String>> headers = new HashMap<>();
+		responseHeaders.forEach((name, values) -> {
+			if (!values.isEmpty() && !name.equalsIgnoreCase("Content-Type")) headers.put(name, List.copyOf(values));
+		});
+
+		byte[] content = result.contentBuffer();
+		byte[] gzipContent = result.gzipBuffer();
+		if (gzipContent == null && compressionPolicy.shouldCompress(result.mimeType(), content.length))
+			gzipContent = compressionPolicy.compress(content);
+
+		ActionResult cached = new ActionResult(content, result.mimeType(), 200, result.headers(), gzipContent);
+
+		OutputCache outputCache = route.outputCache();
+		long now = System.currentTimeMillis();
+		long expires = now + TimeUnit.SECONDS.toMillis(outputCache.duration());
+		Entry entry = new Entry(cached, Map.copyOf(headers), generation, expires,
+				expires + TimeUnit.SECONDS.toMillis(outputCache.staleWhileRevalidate()), new AtomicBoolean());
+		entries.put(key, entry);
+
+		return entry;
+	}
+
+	// Registers flight as the computation of the response for key, unless another one is running already, which is
+	// returned instead.
+	CompletableFuture<Entry> joinFlight(String key, CompletableFuture<Entry> flight) {
+		return inFlight.putIfAbsent(key, flight);
+	}
+
+	// Hands the stored response, or null when nothing was stored, to the requests waiting for flight.
+	void completeFlight(String key, CompletableFuture<Entry> flight, Entry entry) {
+		inFlight.remove(key, flight);
+		flight.complete(entry);
+	}
+
+	// Returns the response computed by another request, or null when it was not cached or took longer than coalesceTimeout.
+	Entry awaitFlight(CompletableFuture<Entry> flight) {
+		try {
+			Entry entry = flight.get(coalesceTimeout, TimeUnit.MILLISECONDS);
+			if (entry != null) coalesced.increment();
+
+			return entry;
+		} catch (TimeoutException e) {
+			coalesceTimeouts.increment();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {}
+
+		return null;
+	}
+
+	// Both counters only grow, so a sum read before either is bumped never matches a later one.
+	long getGeneration(Route route) {
+		AtomicLong generation = routeGenerations.get(route.method());
+		if (generation == null)
+			generation = routeGenerations.computeIfAbsent(route.method(), x -> generation(routeName(route.controllerClass(), x.getName())));
+
+		return epoch.get() + generation.get();
+	}
+
+	void recordRefresh() {
+		refreshes.increment();
+	}
+
+	// The key holds the route, the url arguments and the vary values, each prefixed with its length so that values
+	// containing separators cannot produce the same key for different requests.
+	static String key(Route route, List<String> urlArgs, Map<String, String> params, Headers requestHeaders, Cookies cookies) {
+		OutputCache outputCache = route.outputCache();
+		StringBuilder sb = new StringBuilder(128);
+		sb.append(routeName(route.controllerClass(), route.method().getName()));
+
+		sb.append("|a");
+		for (String urlArg: urlArgs)
+			append(sb, urlArg);
+
+		String[] varyByParam = outputCache.varyByParam();
+		if (Arrays.asList(varyByParam).contains("*")) {
+			sb.append("|p");
+			new TreeMap<>(params).forEach((name, value) -> append(append(sb, name), value));
+		} else if (varyByParam.length > 0) {
+			sb.append("|p");
+			for (String name: varyByParam)
+				append(sb, params.get(name));
+		}
+
+		if (outputCache.varyByHeader().length > 0) {
+			sb.append("|h");
+			for (String name: outputCache.varyByHeader())
+				append(sb, requestHeaders.getFirst(name));
+		}
+
+		if (outputCache.varyByCookie().length > 0) {
+			sb.append("|c");
+			for (String name: outputCache.varyByCookie())
+				append(sb, cookies.getCookie(name));
+		}
+
+		return sb.toString();
+	}
+
+	private static class CappedBuffer extends OutputStream {
+		private ByteArrayOutputStream buffer;
+		private int limit;
+		private Overflow overflow;
+		private OutputStream output;
+
+		CappedBuffer(int size, int limit, Overflow overflow) {
+			this.buffer = new ByteArrayOutputStream(Math.min(size, limit));
+			this.limit = limit;
+			this.overflow = overflow;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (output == null && buffer.size() + len > limit) {
+				output = overflow.open();
+				buffer.writeTo(output);
+				buffer = null;
+			}
+
+			if (output != null) output.write(b, off, len);
+			else buffer.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (output != null) output.flush();
+		}
+
+		// the overflow stream is only closed by finish(), once the body was written completely
+		@Override
+		public void close() {}
+
+		boolean overflowed() {
+			return output != null;
+		}
+
+		void finish() throws IOException {
+			output.close();
+		}
+
+		byte[] toByteArray() {
+			return buffer.toByteArray();
+		}
+	}
+
+	private static StringBuilder append(StringBuilder sb, String value) {
+		if (value == null) return sb.append("|-");
+
+		return sb.append('|').append(value.length()).append(':').append(value);
+	}
+
+	private AtomicLong generation(String routeName) {
+		return generations.computeIfAbsent(routeName, x -> new AtomicLong());
+	}
+
+	private static String routeName(Class<?> controllerClass, String actionName) {
+		return controllerClass.getName() + "." + actionName;
+	}
+}
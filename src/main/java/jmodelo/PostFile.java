@@ -15,8 +15,83 @@
  */
 package jmodelo;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
-public record PostFile(String fileName, String contentType, File tempFile) {
+// An uploaded file. Small files are kept in memory and only written to a temp file if tempFile() is called.
+public final class PostFile {
+	private final String fileName;
+	private final String contentType;
+	private final byte[] data;
+	private final File tempFolder;
+	private File tempFile;
 
+	public PostFile(String fileName, String contentType, File tempFile) {
+		this.fileName = fileName;
+		this.contentType = contentType;
+		this.data = null;
+		this.tempFolder = tempFile.getParentFile();
+		this.tempFile = tempFile;
+	}
+
+	public PostFile(String fileName, String contentType, byte[] data, File tempFolder) {
+		this.fileName = fileName;
+		this.contentType = contentType;
+		this.data = data;
+		this.tempFolder = tempFolder;
+	}
+
+	public String fileName() {
+		return fileName;
+	}
+
+	public String contentType() {
+		return contentType;
+	}
+
+	public boolean isInMemory() {
+		return data != null;
+	}
+
+	public long size() {
+		return data != null ? data.length : tempFile.length();
+	}
+
+	public byte[] getBytes() throws IOException {
+		return data != null ? data : Files.readAllBytes(tempFile.toPath());
+	}
+
+	public InputStream openStream() throws IOException {
+		return data != null ? new ByteArrayInputStream(data) : new FileInputStream(tempFile);
+	}
+
+	public void transferTo(Path target) throws IOException {
+		if (data != null) Files.write(target, data);
+		else Files.copy(tempFile.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public synchronized File tempFile() {
+		if (tempFile == null) {
+			File f = UploadPolicy.createTempFile(tempFolder);
+			try {
+				Files.write(f.toPath(), data);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			tempFile = f;
+		}
+
+		return tempFile;
+	}
+
+	synchronized File getTempFileIfCreated() {
+		return tempFile;
+	}
 }
@@ -0,0 +1,80 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// Collects the bytes of an uploaded file in memory and moves them to a temp file once they exceed the memory threshold.
+class PostFileWriter {
+	private UploadPolicy uploadPolicy;
+	private ByteArrayOutputStream memory;
+	private File file;
+	private FileChannel channel;
+	private long size;
+
+	PostFileWriter(UploadPolicy uploadPolicy) {
+		this.uploadPolicy = uploadPolicy;
+		this.memory = new ByteArrayOutputStream();
+	}
+
+	void write(byte[] buffer, int offset, int length) throws IOException {
+		size += length;
+		if (size > uploadPolicy.getMaxFileSize())
+			throw new PayloadTooLargeException("Uploaded file larger than %d bytes".formatted(uploadPolicy.getMaxFileSize()));
+
+		if (channel == null && size <= uploadPolicy.getMemoryThreshold()) {
+			memory.write(buffer, offset, length);
+			return;
+		}
+
+		if (channel == null) {
+			file = uploadPolicy.createTempFile();
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			writeFully(ByteBuffer.wrap(memory.toByteArray()));
+			memory = null;
+		}
+
+		writeFully(ByteBuffer.wrap(buffer, offset, length));
+	}
+
+	PostFile finish(String fileName, String contentType) throws IOException {
+		if (channel == null)
+			return new PostFile(fileName, contentType, memory.toByteArray(), uploadPolicy.getTempFolder());
+
+		channel.close();
+		return new PostFile(fileName, contentType, file);
+	}
+
+	void abort() {
+		if (channel == null) return;
+
+		try {
+			channel.close();
+		} catch (IOException e) {}
+		file.delete();
+	}
+
+	private void writeFully(ByteBuffer data) throws IOException {
+		while (data.hasRemaining())
+			channel.write(data);
+	}
+}
@@ -0,0 +1,56 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+public class PrecompiledViews {
+	public static final String INDEX_CLASS = "jmodelo.views.PrecompiledViewIndex";
+
+	private static final Map<String, PrecompiledView> views = new ConcurrentHashMap<>(loadIndex());
+
+	public static PrecompiledView get(String viewPath) {
+		return views.get(viewPath);
+	}
+
+	// Once the source of a precompiled view changes, the view is rendered from the file instead.
+	public static void invalidate(String viewPath) {
+		views.remove(viewPath);
+	}
+
+	public static void invalidateAll() {
+		views.clear();
+	}
+
+	public static int size() {
+		return views.size();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, PrecompiledView> loadIndex() {
+		try {
+			Class<?> indexClass = Class.forName(INDEX_CLASS);
+			return Map.copyOf(((Supplier<Map<String, PrecompiledView>>)indexClass.getDeclaredConstructor().newInstance()).get());
+		} catch (ClassNotFoundException e) {
+			return Map.of();
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			System.err.println("Could not load precompiled views: %s".formatted(e));
+			return Map.of();
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import jmodelo.RequestStats.Phase;
+import jmodelo.RequestStats.RouteStats;
+
+// Formats the collected metrics in the Prometheus text exposition format.
+public class PrometheusMetrics {
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+	private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private PrometheusMetrics() {}
+
+	public static String format(RequestStats requestStats, ConnectionStats connectionStats, HikariDataSource dataSource,
+			ViewEngine viewEngine, SessionStore sessionStore, OutputCacheStore outputCache) {
+		StringBuilder sb = new StringBuilder(4096);
+		Map<String, RouteStats> routes = new TreeMap<>(requestStats.getRoutes());
+
+		header(sb, "jmodelo_request_phase_seconds", "summary", "Time spent in each phase of a request, per route.");
+		for (RouteStats route: routes.values()) {
+			for (Phase phase: Phase.values()) {
+				LatencyHistogram histogram = route.getHistogram(phase);
+				long count = histogram.getCount();
+				if (count == 0) continue;
+
+				String labels = "route=\"%s\",phase=\"%s\"".formatted(escape(route.getName()), phase.name().toLowerCase(Locale.ROOT));
+				for (double quantile: QUANTILES) {
+					sample(sb, "jmodelo_request_phase_seconds", labels + ",quantile=\"%s\"".formatted(quantile),
+							histogram.getPercentileNanos(quantile * 100) / NANOS_PER_SECOND);
+				}
+				sample(sb, "jmodelo_request_phase_seconds_sum", labels, histogram.getSumNanos() / NANOS_PER_SECOND);
+				sample(sb, "jmodelo_request_phase_seconds_count", labels, count);
+			}
+		}
+
+		header(sb, "jmodelo_request_phase_max_seconds", "gauge", "Slowest recorded duration of each phase, per route.");
+		for (RouteStats route: routes.values()) {
+			for (Phase phase: Phase.values()) {
+				LatencyHistogram histogram = route.getHistogram(phase);
+				if (histogram.getCount() == 0) continue;
+
+				sample(sb, "jmodelo_request_phase_max_seconds", "route=\"%s\",phase=\"%s\"".formatted(escape(route.getName()),
+						phase.name().toLowerCase(Locale.ROOT)), histogram.getMaxNanos() / NANOS_PER_SECOND);
+			}
+		}
+
+		header(sb, "jmodelo_request_errors_total", "counter", "Requests that ended in an error, per route.");
+		for (RouteStats route: routes.values()) {
+			if (route.getRequestCount() > 0)
+				sample(sb, "jmodelo_request_errors_total", "route=\"%s\"".formatted(escape(route.getName())), route.getErrorCount());
+		}
+
+		header(sb, "jmodelo_db_connections_acquired_total", "counter", "Database connections acquired by requests.");
+		sample(sb, "jmodelo_db_connections_acquired_total", null, connectionStats.getAcquiredCount());
+		header(sb, "jmodelo_db_connection_acquire_seconds_avg", "gauge", "Average time spent waiting for a connection.");
+		sample(sb, "jmodelo_db_connection_acquire_seconds_avg", null, connectionStats.getAverageAcquireMillis() / 1000);
+		header(sb, "jmodelo_db_connection_hold_seconds_avg", "gauge", "Average time a request held its connection.");
+		sample(sb, "jmodelo_db_connection_hold_seconds_avg", null, connectionStats.getAverageHoldMillis() / 1000);
+		header(sb, "jmodelo_db_connection_hold_seconds_max", "gauge", "Longest time a request held its connection.");
+		sample(sb, "jmodelo_db_connection_hold_seconds_max", null, connectionStats.getMaxHoldMillis() / 1000);
+
+		HikariPoolMXBean pool = dataSource != null ? dataSource.getHikariPoolMXBean() : null;
+		if (pool != null) {
+			header(sb, "jmodelo_db_pool_connections", "gauge", "Connections of the pool by state.");
+			sample(sb, "jmodelo_db_pool_connections", "state=\"active\"", pool.getActiveConnections());
+			sample(sb, "jmodelo_db_pool_connections", "state=\"idle\"", pool.getIdleConnections());
+			header(sb, "jmodelo_db_pool_connections_max", "gauge", "Maximum size of the pool.");
+			sample(sb, "jmodelo_db_pool_connections_max", null, dataSource.getMaximumPoolSize());
+			header(sb, "jmodelo_db_pool_pending_threads", "gauge", "Threads waiting for a connection from the pool.");
+			sample(sb, "jmodelo_db_pool_pending_threads", null, pool.getThreadsAwaitingConnection());
+		}
+
+		SegmentedCache<String, ViewTemplate> templateCache = viewEngine.getTemplateCache();
+		header(sb, "jmodelo_template_cache_hits_total", "counter", "Template cache lookups that found a compiled template.");
+		sample(sb, "jmodelo_template_cache_hits_total", null, templateCache.getHits());
+		header(sb, "jmodelo_template_cache_misses_total", "counter", "Template cache lookups that had to compile the template.");
+		sample(sb, "jmodelo_template_cache_misses_total", null, templateCache.getMisses());
+		header(sb, "jmodelo_template_cache_evictions_total", "counter", "Templates evicted from the cache.");
+		sample(sb, "jmodelo_template_cache_evictions_total", null, templateCache.getEvictions());
+		header(sb, "jmodelo_template_cache_hit_ratio", "gauge", "Share of template cache lookups that were hits.");
+		sample(sb, "jmodelo_template_cache_hit_ratio", null, templateCache.getHitRate());
+		header(sb, "jmodelo_template_cache_size", "gauge", "Compiled templates in the cache.");
+		sample(sb, "jmodelo_template_cache_size", null, templateCache.size());
+
+		header(sb, "jmodelo_output_cache_requests_total", "counter", "Output cache lookups by result.");
+		sample(sb, "jmodelo_output_cache_requests_total", "result=\"hit\"", outputCache.getHits());
+		sample(sb, "jmodelo_output_cache_requests_total", "result=\"stale\"", outputCache.getStaleHits());
+		sample(sb, "jmodelo_output_cache_requests_total", "result=\"miss\"", outputCache.getMisses());
+		header(sb, "jmodelo_output_cache_refreshes_total", "counter", "Stale responses refreshed in the background.");
+		sample(sb, "jmodelo_output_cache_refreshes_total", null, outputCache.getRefreshes());
+		header(sb, "jmodelo_output_cache_coalesced_total", "counter", "Requests that got the response of an identical request running at the same time.");
+		sample(sb, "jmodelo_output_cache_coalesced_total", null, outputCache.getCoalesced());
+		header(sb, "jmodelo_output_cache_coalesce_timeouts_total", "counter", "Requests that stopped waiting for an identical request and ran the action.");
+		sample(sb, "jmodelo_output_cache_coalesce_timeouts_total", null, outputCache.getCoalesceTimeouts());
+		header(sb, "jmodelo_output_cache_in_flight", "gauge", "Cacheable responses being computed.");
+		sample(sb, "jmodelo_output_cache_in_flight", null, outputCache.getInFlight());
+		header(sb, "jmodelo_output_cache_size", "gauge", "Responses in the output cache.");
+		sample(sb, "jmodelo_output_cache_size", null, outputCache.size());
+
+		if (sessionStore instanceof MemorySessionStore sessions) {
+			header(sb, "jmodelo_sessions", "gauge", "Sessions in memory.");
+			sample(sb, "jmodelo_sessions", null, sessions.size());
+			header(sb, "jmodelo_sessions_max", "gauge", "Sessions kept in memory before the least recently used are evicted.");
+			sample(sb, "jmodelo_sessions_max", null, sessions.getMaxSessions());
+			header(sb, "jmodelo_sessions_removed_total", "counter", "Sessions dropped by the store, by reason.");
+			sample(sb, "jmodelo_sessions_removed_total", "reason=\"expired\"", sessions.getExpiredCount());
+			sample(sb, "jmodelo_sessions_removed_total", "reason=\"evicted\"", sessions.getEvictedCount());
+			header(sb, "jmodelo_session_merges_total", "counter", "Saves merged with changes stored by other requests.");
+			sample(sb, "jmodelo_session_merges_total", null, sessions.getMergedCount());
+			header(sb, "jmodelo_session_pending_writes", "gauge", "Changed sessions not yet written to the folder.");
+			sample(sb, "jmodelo_session_pending_writes", null, sessions.getPendingWrites());
+			header(sb, "jmodelo_session_sweeps_total", "counter", "Sweeps for expired sessions.");
+			sample(sb, "jmodelo_session_sweeps_total", null, sessions.getSweepCount());
+			header(sb, "jmodelo_session_sweep_seconds", "gauge", "Duration of the last and of the slowest sweep.");
+			sample(sb, "jmodelo_session_sweep_seconds", "sweep=\"last\"", sessions.getLastSweepMillis() / 1000);
+			sample(sb, "jmodelo_session_sweep_seconds", "sweep=\"max\"", sessions.getMaxSweepMillis() / 1000);
+		}
+
+		return sb.toString();
+	}
+
+	private static void header(StringBuilder sb, String name, String type, String help) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	private static void sample(StringBuilder sb, String name, String labels, double value) {
+		sb.append(name);
+		if (labels != null) sb.append('{').append(labels).append('}');
+		sb.append(' ');
+
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) sb.append((long)value);
+		else sb.append(value);
+
+		sb.append('\n');
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,113 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histograms per route and per phase of a request. Requests that did not reach an action are recorded under
+// the "static" and "unmatched" routes, so the number of routes stays bounded by the number of actions.
+public class RequestStats {
+	public static final String STATIC_ROUTE = "static";
+	public static final String UNMATCHED_ROUTE = "unmatched";
+
+	// ACTION is the whole action method, so it includes the VIEW, CONNECTION and SESSION_LOAD time spent inside it.
+	// COALESCING is the time spent waiting for the response of an identical cacheable request. TOTAL runs until the
+	// response has been written.
+	public enum Phase { ROUTING, COALESCING, CONNECTION, SESSION_LOAD, ACTION, VIEW, SESSION_STORE, COMPRESSION, TOTAL }
+
+	private Map<Route, RouteStats> routes;
+	private Map<String, RouteStats> routesByName;
+	private RouteStats staticFiles;
+	private RouteStats unmatched;
+
+	public RequestStats() {
+		this.routes = new ConcurrentHashMap<>();
+		this.routesByName = new ConcurrentHashMap<>();
+		this.staticFiles = new RouteStats(STATIC_ROUTE);
+		this.unmatched = new RouteStats(UNMATCHED_ROUTE);
+
+		routesByName.put(STATIC_ROUTE, staticFiles);
+		routesByName.put(UNMATCHED_ROUTE, unmatched);
+	}
+
+	// Routes are named after the controller class and the action method, e.g. app.controllers.HomeController.index.
+	public Map<String, RouteStats> getRoutes() {
+		return Collections.unmodifiableMap(routesByName);
+	}
+
+	public RouteStats getRoute(String name) {
+		return routesByName.get(name);
+	}
+
+	RouteStats getRoute(Route route) {
+		RouteStats stats = routes.get(route);
+		if (stats != null) return stats;
+
+		return routes.computeIfAbsent(route, x -> {
+			String name = "%s.%s".formatted(x.controllerClass().getName(), x.method().getName());
+			return routesByName.computeIfAbsent(name, RouteStats::new);
+		});
+	}
+
+	RouteStats getStaticFiles() {
+		return staticFiles;
+	}
+
+	void record(RequestTimings timings) {
+		RouteStats route = timings.getRoute() != null ? timings.getRoute() : unmatched;
+
+		for (Phase phase: Phase.values()) {
+			long nanos = timings.get(phase);
+			if (nanos >= 0) route.getHistogram(phase).record(nanos);
+		}
+
+		if (timings.isFailed()) route.errors.increment();
+	}
+
+	public static class RouteStats {
+		private final String name;
+		private final LatencyHistogram[] phases;
+		private final LongAdder errors;
+
+		RouteStats(String name) {
+			this.name = name;
+			this.phases = new LatencyHistogram[Phase.values().length];
+			for (int i = 0; i < phases.length; i++)
+				phases[i] = new LatencyHistogram();
+
+			this.errors = new LongAdder();
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public LatencyHistogram getHistogram(Phase phase) {
+			return phases[phase.ordinal()];
+		}
+
+		public long getRequestCount() {
+			return getHistogram(Phase.TOTAL).getCount();
+		}
+
+		public long getErrorCount() {
+			return errors.sum();
+		}
+	}
+}
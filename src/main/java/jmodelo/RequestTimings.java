@@ -0,0 +1,68 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.util.Arrays;
+
+import jmodelo.RequestStats.Phase;
+import jmodelo.RequestStats.RouteStats;
+
+// Collects the phase durations of one request before they are added to the shared histograms in one go.
+class RequestTimings {
+	private final long start;
+	private final long[] nanos;
+	private RouteStats route;
+	private boolean failed;
+
+	RequestTimings() {
+		this.start = System.nanoTime();
+		this.nanos = new long[Phase.values().length];
+		Arrays.fill(nanos, -1);
+	}
+
+	void add(Phase phase, long duration) {
+		int i = phase.ordinal();
+		nanos[i] = nanos[i] < 0 ? duration : nanos[i] + duration;
+	}
+
+	void addSince(Phase phase, long startNanos) {
+		add(phase, System.nanoTime() - startNanos);
+	}
+
+	long get(Phase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	void finish() {
+		nanos[Phase.TOTAL.ordinal()] = System.nanoTime() - start;
+	}
+
+	RouteStats getRoute() {
+		return route;
+	}
+
+	void setRoute(RouteStats route) {
+		this.route = route;
+	}
+
+	boolean isFailed() {
+		return failed;
+	}
+
+	void setFailed() {
+		this.failed = true;
+	}
+}
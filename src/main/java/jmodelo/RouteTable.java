@@ -0,0 +1,180 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import jmodelo.annotations.ExclusiveSession;
+import jmodelo.annotations.HttpPost;
+import jmodelo.annotations.OutputCache;
+import jmodelo.annotations.RawInput;
+
+public class RouteTable {
+	private static final String CONTROLLER_SUFFIX = "Controller";
+
+	// area ("" for the root package) -> lower-cased controller name without the suffix -> controller class
+	private final Map<String, Map<String, Class<?>>> controllers;
+	private final Map<Class<?>, Map<String, Route>> routes;
+
+	private RouteTable(Map<String, Map<String, Class<?>>> controllers, Map<Class<?>, Map<String, Route>> routes) {
+		this.controllers = controllers;
+		this.routes = routes;
+	}
+
+	public static RouteTable scan(String controllersPackage, List<String> areas) throws IOException {
+		Map<String, String> packages = new LinkedHashMap<>();
+		packages.put("", controllersPackage);
+		if (areas != null)
+			areas.forEach(x -> packages.put(x, "%s.%s".formatted(controllersPackage, x.toLowerCase())));
+
+		Map<String, Map<String, Class<?>>> controllers = new HashMap<>();
+		Map<Class<?>, Map<String, Route>> routes = new HashMap<>();
+		for (Map.Entry<String, String> areaPackage: packages.entrySet()) {
+			Map<String, Class<?>> areaControllers = new HashMap<>();
+			for (Class<?> controllerClass: findControllers(areaPackage.getValue())) {
+				String simpleName = controllerClass.getSimpleName();
+				String controllerName = simpleName.substring(0, simpleName.length() - CONTROLLER_SUFFIX.length()).toLowerCase();
+
+				Class<?> existing = areaControllers.putIfAbsent(controllerName, controllerClass);
+				if (existing != null) {
+					System.err.println("Skipping controller %s: same name as %s".formatted(controllerClass.getName(), existing.getName()));
+					continue;
+				}
+
+				routes.put(controllerClass, Map.copyOf(getRoutes(controllerClass)));
+			}
+			controllers.put(areaPackage.getKey(), Map.copyOf(areaControllers));
+		}
+
+		return new RouteTable(Map.copyOf(controllers), Map.copyOf(routes));
+	}
+
+	// Finds the controller of a request path segment, e.g. "default" or "Default" for DefaultController. The area is null
+	// for the root package.
+	public Optional<Class<?>> getController(String areaName, String controllerName) {
+		Map<String, Class<?>> areaControllers = controllers.get(areaName != null ? areaName : "");
+
+		return areaControllers != null ? Optional.ofNullable(areaControllers.get(controllerName.toLowerCase()))
+				: Optional.empty();
+	}
+
+	public Optional<Route> getRoute(Class<?> controllerClass, String requestMethod, String actionName) {
+		Map<String, Route> controllerRoutes = routes.get(controllerClass);
+
+		return controllerRoutes != null ? Optional.ofNullable(controllerRoutes.get(routeKey(requestMethod, actionName)))
+				: Optional.empty();
+	}
+
+	private static Map<String, Route> getRoutes(Class<?> controllerClass) {
+		Map<String, Route> controllerRoutes = new HashMap<>();
+		for (Method method: controllerClass.getDeclaredMethods()) {
+			if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers()) || method.isSynthetic())
+				continue;
+
+			String requestMethod = method.getAnnotation(HttpPost.class) != null ? "POST" : "GET";
+			String key = routeKey(requestMethod, method.getName());
+			if (controllerRoutes.containsKey(key)) continue;
+
+			try {
+				controllerRoutes.put(key, new Route(controllerClass, method, method.getAnnotation(RawInput.class) != null,
+						method.getAnnotation(ExclusiveSession.class) != null, method.getAnnotation(OutputCache.class),
+						new ActionInvoker(controllerClass, method)));
+			} catch (IllegalAccessException | RuntimeException e) {
+				System.err.println("Skipping action %s.%s: %s".formatted(controllerClass.getName(), method.getName(), e));
+			}
+		}
+
+		return controllerRoutes;
+	}
+
+	private static String routeKey(String requestMethod, String actionName) {
+		return requestMethod + " " + actionName;
+	}
+
+	private static List<Class<?>> findControllers(String packageName) throws IOException {
+		ClassLoader classLoader = RouteTable.class.getClassLoader();
+		String path = packageName.replace('.', '/');
+
+		List<Class<?>> classes = new ArrayList<>();
+		for (URL url: Collections.list(classLoader.getResources(path))) {
+			List<String> classNames = url.getProtocol().equals("jar") ? listJarClasses(url, path) : listDirectoryClasses(url);
+
+			for (String className: classNames) {
+				try {
+					Class<?> c = Class.forName("%s.%s".formatted(packageName, className), true, classLoader);
+					if (Controller.class.isAssignableFrom(c) && !Modifier.isAbstract(c.getModifiers()))
+						classes.add(c);
+				} catch (ClassNotFoundException | LinkageError e) {
+					System.err.println("Skipping controller %s.%s: %s".formatted(packageName, className, e));
+				}
+			}
+		}
+
+		return classes;
+	}
+
+	private static List<String> listDirectoryClasses(URL url) throws IOException {
+		Path directory;
+		try {
+			directory = Paths.get(url.toURI());
+		} catch (URISyntaxException e) {
+			throw new IOException(e);
+		}
+
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.map(x -> x.getFileName().toString())
+					.filter(RouteTable::isControllerClassFile)
+					.map(x -> x.substring(0, x.length() - ".class".length()))
+					.collect(Collectors.toList());
+		}
+	}
+
+	private static List<String> listJarClasses(URL url, String path) throws IOException {
+		JarURLConnection connection = (JarURLConnection)url.openConnection();
+		connection.setUseCaches(false);
+
+		try (JarFile jarFile = connection.getJarFile()) {
+			return jarFile.stream().map(x -> x.getName())
+					.filter(x -> x.startsWith(path + "/") && x.indexOf('/', path.length() + 1) == -1)
+					.map(x -> x.substring(path.length() + 1))
+					.filter(RouteTable::isControllerClassFile)
+					.map(x -> x.substring(0, x.length() - ".class".length()))
+					.collect(Collectors.toList());
+		}
+	}
+
+	private static boolean isControllerClassFile(String fileName) {
+		return fileName.endsWith(CONTROLLER_SUFFIX + ".class") && !fileName.contains("$");
+	}
+}
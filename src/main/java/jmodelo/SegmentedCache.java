@@ -0,0 +1,183 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Thread-safe cache split into independently locked stripes. Every stripe is a segmented LRU: new entries go to
+// a probation segment and move to a protected segment on their second hit, so one-off keys only evict each other.
+public class SegmentedCache<K, V> {
+	private static final int MAX_STRIPES = 16;
+
+	private final int capacity;
+	private final List<Segment<K, V>> stripes;
+
+	private final LongAdder hits;
+	private final LongAdder misses;
+	private final LongAdder evictions;
+
+	public SegmentedCache(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive");
+
+		int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, capacity / 8)));
+		int stripeCapacity = (capacity + stripeCount - 1) / stripeCount;
+
+		this.capacity = capacity;
+		this.stripes = new ArrayList<>(stripeCount);
+		for (int i = 0; i < stripeCount; i++)
+			stripes.add(new Segment<>(stripeCapacity));
+
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+
+	public V get(K key) {
+		V value = stripe(key).get(key);
+		if (value != null) hits.increment();
+		else misses.increment();
+
+		return value;
+	}
+
+	public boolean contains(K key) {
+		return stripe(key).contains(key);
+	}
+
+	public void put(K key, V value) {
+		evictions.add(stripe(key).put(key, value));
+	}
+
+	public V remove(K key) {
+		return stripe(key).remove(key);
+	}
+
+	public void clear() {
+		for (Segment<K, V> segment: stripes)
+			segment.clear();
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment: stripes)
+			size += segment.size();
+
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	public double getHitRate() {
+		long hits = this.hits.sum(), total = hits + misses.sum();
+		return total > 0 ? (double)hits / total : 0;
+	}
+
+	private Segment<K, V> stripe(K key) {
+		int h = key.hashCode();
+		return stripes.get((h ^ (h >>> 16)) & (stripes.size() - 1));
+	}
+
+	private static class Segment<K, V> {
+		private final int capacity;
+		private final int protectedCapacity;
+		private final LinkedHashMap<K, V> probation;
+		private final LinkedHashMap<K, V> protectedEntries;
+
+		Segment(int capacity) {
+			this.capacity = capacity;
+			this.protectedCapacity = Math.max(1, capacity * 4 / 5);
+			this.probation = new LinkedHashMap<>(16, 0.75f, true);
+			this.protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+		}
+
+		synchronized V get(K key) {
+			V value = protectedEntries.get(key);
+			if (value != null) return value;
+
+			value = probation.remove(key);
+			if (value != null) promote(key, value);
+
+			return value;
+		}
+
+		synchronized boolean contains(K key) {
+			return protectedEntries.containsKey(key) || probation.containsKey(key);
+		}
+
+		synchronized int put(K key, V value) {
+			if (protectedEntries.containsKey(key)) {
+				protectedEntries.put(key, value);
+				return 0;
+			}
+
+			probation.put(key, value);
+
+			int evicted = 0;
+			while (probation.size() + protectedEntries.size() > capacity) {
+				Iterator<Map.Entry<K, V>> it = (probation.size() > 1 || protectedEntries.isEmpty() ? probation : protectedEntries).entrySet().iterator();
+				it.next();
+				it.remove();
+				evicted++;
+			}
+
+			return evicted;
+		}
+
+		synchronized V remove(K key) {
+			V value = protectedEntries.remove(key);
+			return value != null ? value : probation.remove(key);
+		}
+
+		synchronized void clear() {
+			probation.clear();
+			protectedEntries.clear();
+		}
+
+		synchronized int size() {
+			return probation.size() + protectedEntries.size();
+		}
+
+		private void promote(K key, V value) {
+			protectedEntries.put(key, value);
+			if (protectedEntries.size() > protectedCapacity) {
+				Iterator<Map.Entry<K, V>> it = protectedEntries.entrySet().iterator();
+				Map.Entry<K, V> demoted = it.next();
+				it.remove();
+				probation.put(demoted.getKey(), demoted.getValue());
+			}
+		}
+	}
+}
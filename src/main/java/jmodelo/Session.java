@@ -15,77 +15,118 @@
  */
 package jmodelo;
 
-import java.io.File;
 import java.io.IOException;
-import java.lang.reflect.Type;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.locks.Lock;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
 public class Session {
 	private Cookies cookies;
+	private SessionStore store;
+	private boolean exclusive;
 	private Map<String, String> values;
+	private long version;
+	private Map<String, String> updated;
+	private Set<String> removed;
 	private Lock lock;
+	private long loadNanos;
 
-	public Session(Cookies cookies) throws IOException {
-		this.cookies = cookies;
-		this.values = new HashMap<>();
+	public Session(Cookies cookies, SessionStore store) {
+		this(cookies, store, false);
+	}
 
-		loadSession();
+	// Requests only lock the session when exclusive access is asked for (see the ExclusiveSession annotation). Other
+	// requests read a snapshot of the session and their changes are merged into it when it is stored.
+	public Session(Cookies cookies, SessionStore store, boolean exclusive) {
+		this.cookies = cookies;
+		this.store = store;
+		this.exclusive = exclusive;
+		this.updated = new HashMap<>();
+		this.removed = new HashSet<>();
+		this.loadNanos = -1;
 	}
 
 	public void storeSession() throws IOException {
-		String sessionId = cookies.getCookie("sessionid");
-
-		if (sessionId != null) {
-			File f = new File("sessions/%s.json".formatted(sessionId));
+		try {
+			save();
+		} finally {
+			unlock();
+		}
+	}
 
-			String jsonData = new Gson().toJson(values);
-			Files.writeString(f.toPath(), jsonData, StandardCharsets.UTF_8);
+	// Saving and unlocking are separate so that an exclusive session stays locked while a streamed response is written.
+	void save() throws IOException {
+		if (isDirty()) store.save(cookies, version, updated, removed);
+	}
 
-			if (this.lock != null) {
-				SessionLocks.getInstance().removeLock(sessionId);
-				this.lock.unlock();
-			}
+	void unlock() {
+		if (lock != null) {
+			lock.unlock();
+			lock = null;
 		}
 	}
 
 	public String getValue(String name) {
-		return values.get(name);
+		return values().get(name);
 	}
 
 	public void addValue(String name, String value) {
-		values.put(name, value);
+		Map<String, String> values = values();
+		if (values.containsKey(name) && Objects.equals(values.get(name), value)) return;
 
-		String sessionId = cookies.getCookie("sessionid");
-		if (sessionId == null)
-			cookies.addCookie("sessionid", UUID.randomUUID().toString(), 0);
+		values.put(name, value);
+		updated.put(name, value);
+		removed.remove(name);
 	}
 
 	public void removeValue(String name) {
+		Map<String, String> values = values();
+		if (!values.containsKey(name)) return;
+
 		values.remove(name);
+		updated.remove(name);
+		removed.add(name);
 	}
-	
-	private void loadSession() throws IOException {
-		String sessionId = cookies.getCookie("sessionid");
 
-		if (sessionId != null) {
-			this.lock = SessionLocks.getInstance().getLock(sessionId);
-			this.lock.lock();
-			File f = new File("sessions/%s.json".formatted(sessionId));
+	public boolean isDirty() {
+		return !updated.isEmpty() || !removed.isEmpty();
+	}
 
-			if (f.exists()) {
-				String jsonData = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+	// -1 when the session was not used, otherwise includes waiting for the lock of an exclusive session.
+	long getLoadNanos() {
+		return loadNanos;
+	}
 
-				Type mapType = new TypeToken<Map<String, String>>(){}.getType();
-				values = new Gson().fromJson(jsonData, mapType);
+	// The session is loaded the first time it is used, so requests that do not use it do not touch the store.
+	private Map<String, String> values() {
+		if (values == null) {
+			try {
+				loadSession();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
 		}
+
+		return values;
+	}
+
+	private void loadSession() throws IOException {
+		long start = System.nanoTime();
+		String sessionId = store.sessionId(cookies);
+
+		if (exclusive && sessionId != null) {
+			lock = SessionLocks.getInstance().getLock(sessionId);
+			lock.lock();
+		}
+
+		SessionData data = store.load(cookies);
+		values = data != null ? new HashMap<>(data.values()) : new HashMap<>();
+		version = data != null ? data.version() : 0;
+
+		loadNanos = System.nanoTime() - start;
 	}
 }
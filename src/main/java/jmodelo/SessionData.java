@@ -15,8 +15,8 @@
  */
 package jmodelo;
 
-import java.lang.reflect.Method;
+import java.util.Map;
 
-public record MethodWithParameters(Method method, Object[] parameters) {
+public record SessionData(long version, Map<String, String> values) {
 
 }
@@ -15,31 +15,28 @@
  */
 package jmodelo;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+// A fixed set of locks shared by all sessions. Two sessions may map to the same lock, which only costs some waiting
+// for actions that ask for exclusive session access.
 public class SessionLocks {
+	private static final SessionLocks instance = new SessionLocks(256);
 
-	private Map<String, Lock> locks;
-	private static SessionLocks instance;
-	
-	public SessionLocks() {
-		this.locks = new ConcurrentHashMap<>();
-	}
-	
-	public Lock getLock(String uuid) {
-		this.locks.putIfAbsent(uuid, new ReentrantLock());
-		return locks.get(uuid);
+	private Lock[] locks;
+
+	public SessionLocks(int stripes) {
+		this.locks = new Lock[Integer.highestOneBit(Math.max(1, stripes - 1)) << 1];
+		for (int i = 0; i < locks.length; i++)
+			locks[i] = new ReentrantLock();
 	}
-	
-	public void removeLock(String uuid) {
-		locks.remove(uuid);
+
+	public Lock getLock(String sessionId) {
+		int h = sessionId.hashCode();
+		return locks[(h ^ (h >>> 16)) & (locks.length - 1)];
 	}
-	
+
 	public static SessionLocks getInstance() {
-		return instance != null ? instance : (instance = new SessionLocks());
+		return instance;
 	}
-	
 }
@@ -0,0 +1,34 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+public interface SessionStore {
+	// Returns the session the request belongs to, or null if it has none.
+	SessionData load(Cookies cookies) throws IOException;
+
+	// Returns the key that identifies the request's session, used for locking it, or null if the request has none.
+	String sessionId(Cookies cookies);
+
+	// Applies the values a request changed to its session, starting a new session if the request has none. Changes made
+	// by other requests since the given version was loaded are kept, unless they changed the same names.
+	void save(Cookies cookies, long version, Map<String, String> updated, Set<String> removed) throws IOException;
+
+	void remove(Cookies cookies) throws IOException;
+}
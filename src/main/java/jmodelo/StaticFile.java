@@ -0,0 +1,124 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.net.httpserver.Headers;
+
+public record StaticFile(File file, File gzipFile, byte[] content, byte[] gzipContent, String mimeType, long size, long lastModified,
+		String etag, long checkedAt) {
+
+	public StaticFile withCheckedAt(long checkedAt) {
+		return new StaticFile(file, gzipFile, content, gzipContent, mimeType, size, lastModified, etag, checkedAt);
+	}
+
+	public boolean isCached() {
+		return content != null;
+	}
+
+	public void writeTo(OutputStream output, long offset, long length) throws IOException {
+		if (content != null) {
+			output.write(content, (int)offset, (int)length);
+			return;
+		}
+
+		transfer(file, output, offset, length);
+	}
+
+	public void writeGzipTo(OutputStream output) throws IOException {
+		transfer(gzipFile, output, 0, gzipFile.length());
+	}
+
+	private static void transfer(File file, OutputStream output, long offset, long length) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			WritableByteChannel target = Channels.newChannel(output);
+			while (length > 0) {
+				long transferred = channel.transferTo(offset, length, target);
+				if (transferred <= 0) break;
+
+				offset += transferred;
+				length -= transferred;
+			}
+		}
+	}
+
+	public Map<String, String> headers(String cacheControl) {
+		Map<String, String> headers = new HashMap<>();
+		headers.put("ETag", etag);
+		headers.put("Last-Modified", formatDate(lastModified));
+		headers.put("Cache-Control", cacheControl);
+		headers.put("Accept-Ranges", "bytes");
+		if (gzipFile != null || gzipContent != null)
+			headers.put("Vary", "Accept-Encoding");
+
+		return headers;
+	}
+
+	// If-Range requires a strong comparison, which a weak etag never passes, so the whole file is sent instead.
+	public boolean matchesIfRange(String ifRange) {
+		if (ifRange == null) return true;
+
+		if (ifRange.startsWith("W/") || ifRange.startsWith("\""))
+			return !etag.startsWith("W/") && ifRange.equals(etag);
+
+		return ifRange.equals(formatDate(lastModified));
+	}
+
+	public boolean isNotModified(Headers requestHeaders) {
+		String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+		if (ifNoneMatch != null) {
+			for (String tag: ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.equals("*") || tag.equals(etag) || ("W/" + tag).equals(etag))
+					return true;
+			}
+
+			return false;
+		}
+
+		String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+		if (ifModifiedSince != null) {
+			try {
+				long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+				return lastModified / 1000 <= since;
+			} catch (DateTimeParseException e) {}
+		}
+
+		return false;
+	}
+
+	public static String createEtag(long size, long lastModified) {
+		return "W/\"%x-%x\"".formatted(size, lastModified);
+	}
+
+	private static String formatDate(long millis) {
+		return DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC));
+	}
+}
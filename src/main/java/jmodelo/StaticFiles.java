@@ -0,0 +1,152 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class StaticFiles {
+	private static final long CHECK_INTERVAL = 1000;
+
+	private String root;
+	private CompressionPolicy compressionPolicy;
+	private long maxFileSize;
+	private String cacheControl;
+	private volatile boolean watched;
+	private StripedCache<String, StaticFile> cache;
+
+	public StaticFiles(String root, CompressionPolicy compressionPolicy) {
+		this(root, compressionPolicy, 64 * 1024 * 1024, 1024 * 1024);
+	}
+
+	public StaticFiles(String root, CompressionPolicy compressionPolicy, long maxCacheSize, long maxFileSize) {
+		this.root = root;
+		this.compressionPolicy = compressionPolicy;
+		this.maxFileSize = maxFileSize;
+		this.cacheControl = "no-cache";
+		this.cache = new StripedCache<>(Integer.MAX_VALUE, maxCacheSize,
+				x -> x.content().length + (x.gzipContent() != null ? x.gzipContent().length : 0));
+	}
+
+	public StaticFile get(String path) throws IOException {
+		long now = System.currentTimeMillis();
+
+		StaticFile file = cache.get(path);
+		if (file != null && (watched || now - file.checkedAt() < CHECK_INTERVAL))
+			return file;
+
+		File f = new File(root + path);
+		if (!f.isFile()) {
+			cache.remove(path);
+			return null;
+		}
+
+		long size = f.length();
+		long lastModified = f.lastModified();
+		if (file != null && file.size() == size && file.lastModified() == lastModified) {
+			file = file.withCheckedAt(now);
+			cache.put(path, file);
+			return file;
+		}
+
+		if (size > maxFileSize) {
+			cache.remove(path);
+			return new StaticFile(f, getGzipSidecar(f), null, null, getMimeType(f.getName()), size, lastModified,
+					StaticFile.createEtag(size, lastModified), now);
+		}
+
+		file = load(f, lastModified, now);
+		cache.put(path, file);
+
+		return file;
+	}
+
+	public void invalidate(String path) {
+		cache.remove(path);
+		if (path.endsWith(".gz"))
+			cache.remove(path.substring(0, path.length() - ".gz".length()));
+	}
+
+	public void invalidateAll() {
+		cache.clear();
+	}
+
+	public String getRoot() {
+		return root;
+	}
+
+	// When the root folder is watched for changes, cached files are served without checking them on disk.
+	public boolean isWatched() {
+		return watched;
+	}
+
+	public void setWatched(boolean watched) {
+		this.watched = watched;
+	}
+
+	public String getCacheControl() {
+		return cacheControl;
+	}
+
+	public void setCacheControl(String cacheControl) {
+		this.cacheControl = cacheControl;
+	}
+
+	private StaticFile load(File f, long lastModified, long now) throws IOException {
+		byte[] content = Files.readAllBytes(f.toPath());
+		String mimeType = getMimeType(f.getName());
+
+		File gzipFile = getGzipSidecar(f);
+		byte[] gzipContent = gzipFile != null ? Files.readAllBytes(gzipFile.toPath())
+				: compressionPolicy.shouldCompress(mimeType, content.length) ? compressionPolicy.compress(content) : null;
+
+		return new StaticFile(f, null, content, gzipContent, mimeType, content.length, lastModified,
+				StaticFile.createEtag(content.length, lastModified), now);
+	}
+
+	private File getGzipSidecar(File f) {
+		File gzipFile = new File(f.getPath() + ".gz");
+
+		return gzipFile.isFile() && gzipFile.lastModified() >= f.lastModified() ? gzipFile : null;
+	}
+
+	public static String getMimeType(String fileName) {
+		String[] fileNameParts = fileName.split("\\.");
+
+		return switch (fileNameParts[fileNameParts.length-1]) {
+		case "html", "htm" -> "text/html";
+		case "txt" -> "text/plain";
+		case "js" -> "text/javascript";
+		case "css" -> "text/css";
+
+		case "exe" -> "application/octet-stream";
+		case "doc" -> "application/msword";
+		case "pdf" -> "application/pdf";
+
+		case "mp4" -> "video/mp4";
+
+		case "jpeg", "jpg" -> "image/jpeg";
+		case "gif" -> "image/gif";
+		case "ico" -> "image/vnd.microsoft.icon";
+		case "png" -> "image/png";
+		case "svg" -> "image/svg+xml";
+		case "webp" -> "image/webp";
+
+		default -> "text/plain";
+		};
+	}
+}
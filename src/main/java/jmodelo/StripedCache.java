@@ -0,0 +1,90 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+// Thread-safe Cache split into independently locked stripes, each bounded by its share of the entries and the weight,
+// so that lookups of different keys do not wait on one lock.
+public class StripedCache<K, V> {
+	private static final int STRIPES = 16;
+
+	private final List<Cache<K, V>> stripes;
+
+	public StripedCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+		this.stripes = new ArrayList<>(STRIPES);
+		for (int i = 0; i < STRIPES; i++)
+			stripes.add(new Cache<>(Math.max(1, maxEntries / STRIPES), Math.max(1, maxWeight / STRIPES), weigher));
+	}
+
+	public V get(K key) {
+		Cache<K, V> stripe = stripe(key);
+		synchronized (stripe) {
+			return stripe.get(key);
+		}
+	}
+
+	public void put(K key, V value) {
+		Cache<K, V> stripe = stripe(key);
+		synchronized (stripe) {
+			stripe.put(key, value);
+		}
+	}
+
+	public V remove(K key) {
+		Cache<K, V> stripe = stripe(key);
+		synchronized (stripe) {
+			return stripe.remove(key);
+		}
+	}
+
+	public void clear() {
+		for (Cache<K, V> stripe: stripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (Cache<K, V> stripe: stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+
+		return size;
+	}
+
+	public long getWeight() {
+		long weight = 0;
+		for (Cache<K, V> stripe: stripes) {
+			synchronized (stripe) {
+				weight += stripe.getWeight();
+			}
+		}
+
+		return weight;
+	}
+
+	private Cache<K, V> stripe(K key) {
+		int h = key.hashCode();
+		return stripes.get((h ^ (h >>> 16)) & (STRIPES - 1));
+	}
+}
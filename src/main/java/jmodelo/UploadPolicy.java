@@ -0,0 +1,148 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+public class UploadPolicy {
+	private File tempFolder;
+	private volatile long maxRequestSize;
+	private volatile long maxFileSize;
+	private volatile int maxFieldSize;
+	private volatile int memoryThreshold;
+
+	public UploadPolicy() {
+		this(new File("temp"));
+	}
+
+	public UploadPolicy(File tempFolder) {
+		this.tempFolder = tempFolder;
+		this.maxRequestSize = 1024L * 1024 * 1024;
+		this.maxFileSize = 1024L * 1024 * 1024;
+		this.maxFieldSize = 2 * 1024 * 1024;
+		this.memoryThreshold = 64 * 1024;
+	}
+
+	public File getTempFolder() {
+		return tempFolder;
+	}
+
+	public long getMaxRequestSize() {
+		return maxRequestSize;
+	}
+
+	public void setMaxRequestSize(long maxRequestSize) {
+		this.maxRequestSize = maxRequestSize;
+	}
+
+	public long getMaxFileSize() {
+		return maxFileSize;
+	}
+
+	public void setMaxFileSize(long maxFileSize) {
+		this.maxFileSize = maxFileSize;
+	}
+
+	// Limit for the values that are parsed in memory: form fields, url encoded forms and json bodies.
+	public int getMaxFieldSize() {
+		return maxFieldSize;
+	}
+
+	public void setMaxFieldSize(int maxFieldSize) {
+		this.maxFieldSize = maxFieldSize;
+	}
+
+	// Uploaded files up to this size are kept in memory instead of being written to the temp folder.
+	public int getMemoryThreshold() {
+		return memoryThreshold;
+	}
+
+	public void setMemoryThreshold(int memoryThreshold) {
+		this.memoryThreshold = memoryThreshold;
+	}
+
+	public InputStream limitRequestBody(InputStream input) {
+		return new LimitedInputStream(input, maxRequestSize);
+	}
+
+	public File createTempFile() {
+		return createTempFile(tempFolder);
+	}
+
+	// The temp files of a request are deleted on a separate thread, so the response does not wait for the disk.
+	public void deleteLater(Collection<PostFile> files) {
+		List<File> tempFiles = files.stream().map(PostFile::getTempFileIfCreated).filter(Objects::nonNull).toList();
+		if (tempFiles.isEmpty()) return;
+
+		Thread.ofVirtual().start(() -> tempFiles.forEach(File::delete));
+	}
+
+	// Deletes the temp files left behind by a previous run, e.g. after a crash.
+	public int sweepTempFolder() {
+		File[] files = tempFolder.listFiles((dir, name) -> name.endsWith(".temp"));
+		if (files == null) return 0;
+
+		int deleted = 0;
+		for (File f: files)
+			if (f.delete()) deleted++;
+
+		return deleted;
+	}
+
+	static File createTempFile(File tempFolder) {
+		return new File(tempFolder, "%s.temp".formatted(UUID.randomUUID().toString()));
+	}
+
+	private static class LimitedInputStream extends FilterInputStream {
+		private long remaining;
+		private long limit;
+
+		LimitedInputStream(InputStream input, long limit) {
+			super(input);
+			this.remaining = limit;
+			this.limit = limit;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) count(1);
+
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) count(read);
+
+			return read;
+		}
+
+		private void count(int read) throws PayloadTooLargeException {
+			remaining -= read;
+			if (remaining < 0)
+				throw new PayloadTooLargeException("Request body larger than %d bytes".formatted(limit));
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ViewCompiler {
+
+	public record ViewPart(boolean code, String text) {
+
+	}
+
+	public static List<ViewPart> parse(String contents) {
+		List<ViewPart> parts = new ArrayList<>();
+
+		int position = 0;
+		while (position < contents.length()) {
+			int codeStart = contents.indexOf("<%", position);
+			int codeEnd = codeStart != -1 ? contents.indexOf("%>", codeStart + 2) : -1;
+
+			if (codeEnd == -1) {
+				parts.add(new ViewPart(false, contents.substring(position)));
+				break;
+			}
+
+			if (codeStart > position)
+				parts.add(new ViewPart(false, contents.substring(position, codeStart)));
+			parts.add(new ViewPart(true, contents.substring(codeStart + 2, codeEnd)));
+
+			position = codeEnd + 2;
+		}
+
+		return parts;
+	}
+
+	public static String compile(String contents) {
+		StringBuilder script = new StringBuilder(contents.length() + contents.length() / 2);
+
+		for (ViewPart part: parse(contents)) {
+			if (part.code()) {
+				script.append(part.text());
+				continue;
+			}
+
+			script.append("_out.write('");
+			appendEscaped(script, part.text());
+			script.append("');");
+		}
+
+		return script.toString();
+	}
+
+	private static void appendEscaped(StringBuilder script, String text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '\r' -> {
+				if (i + 1 < text.length() && text.charAt(i + 1) == '\n') continue;
+				script.append("\\n");
+			}
+			case '\n' -> script.append("\\n");
+			case '\'' -> script.append("\\'");
+			case '\\' -> script.append("\\\\");
+			case '\u2028' -> script.append("\\u2028");
+			case '\u2029' -> script.append("\\u2029");
+			default -> script.append(c);
+			}
+		}
+	}
+}
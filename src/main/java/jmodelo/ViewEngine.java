@@ -0,0 +1,207 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+
+public class ViewEngine {
+	private static final long ACQUIRE_TIMEOUT = 30;
+	private static final int DEFAULT_TEMPLATE_CACHE_SIZE = 512;
+
+	private ScriptEngineFactory scriptEngineFactory;
+	private int poolSize;
+	private BlockingQueue<ViewRuntime> runtimes;
+	private AtomicInteger createdRuntimes;
+	private SegmentedCache<String, ViewTemplate> templates;
+
+	private LongAdder acquisitions;
+	private LongAdder waitNanos;
+	private LongAccumulator maxWaitNanos;
+
+	public ViewEngine() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ViewEngine(int poolSize) {
+		this(poolSize, DEFAULT_TEMPLATE_CACHE_SIZE);
+	}
+
+	public ViewEngine(int poolSize, int templateCacheSize) {
+		this.scriptEngineFactory = new ScriptEngineManager().getEngineByName("JavaScript").getFactory();
+		this.poolSize = poolSize;
+		this.runtimes = new ArrayBlockingQueue<>(poolSize);
+		this.createdRuntimes = new AtomicInteger();
+		this.templates = new SegmentedCache<>(templateCacheSize);
+
+		this.acquisitions = new LongAdder();
+		this.waitNanos = new LongAdder();
+		this.maxWaitNanos = new LongAccumulator(Math::max, 0);
+	}
+
+	public ViewRuntime acquire() throws ScriptException {
+		long start = System.nanoTime();
+
+		ViewRuntime runtime = runtimes.poll();
+		if (runtime == null) {
+			int id = createdRuntimes.getAndIncrement();
+			if (id < poolSize)
+				runtime = createRuntime(id);
+			else {
+				createdRuntimes.decrementAndGet();
+				try {
+					runtime = runtimes.poll(ACQUIRE_TIMEOUT, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				if (runtime == null)
+					throw new ScriptException("Timed out waiting for a view runtime");
+			}
+		}
+
+		long waited = System.nanoTime() - start;
+		acquisitions.increment();
+		waitNanos.add(waited);
+		maxWaitNanos.accumulate(waited);
+
+		return runtime;
+	}
+
+	private ViewRuntime createRuntime(int id) throws ScriptException {
+		try {
+			return new ViewRuntime(id, scriptEngineFactory.getScriptEngine());
+		} catch (ScriptException | RuntimeException e) {
+			createdRuntimes.decrementAndGet();
+			throw e;
+		}
+	}
+
+	public void release(ViewRuntime runtime) {
+		runtime.reset();
+		runtimes.offer(runtime);
+	}
+
+	public ViewTemplate getTemplate(String viewPath) throws IOException {
+		ViewTemplate template = templates.get(viewPath);
+		if (template == null) {
+			template = loadTemplate(viewPath);
+			templates.put(viewPath, template);
+		}
+
+		return template;
+	}
+
+	// Called when a view file changed on disk. Views that are cached get recompiled here, so requests keep using
+	// the previous version until the new one is ready.
+	public void reload(String viewPath) {
+		PrecompiledViews.invalidate(viewPath);
+		if (!templates.contains(viewPath)) return;
+
+		if (!new File(viewPath).isFile()) {
+			templates.remove(viewPath);
+			return;
+		}
+
+		ViewRuntime runtime = null;
+		try {
+			ViewTemplate template = loadTemplate(viewPath);
+			runtime = acquire();
+			runtime.compile(template);
+			templates.put(viewPath, template);
+		} catch (IOException | ScriptException e) {
+			templates.remove(viewPath);
+			System.out.println("Could not compile view %s: %s".formatted(viewPath, e.getMessage()));
+		} finally {
+			if (runtime != null) release(runtime);
+		}
+	}
+
+	public void invalidateAll() {
+		PrecompiledViews.invalidateAll();
+		templates.clear();
+	}
+
+	private ViewTemplate loadTemplate(String viewPath) throws IOException {
+		String contents = new String(Files.readAllBytes(new File(viewPath).toPath()), StandardCharsets.UTF_8);
+
+		return new ViewTemplate(viewPath, ViewCompiler.compile(contents), poolSize);
+	}
+
+	public int warmUp(Path viewsFolder) throws IOException {
+		List<Path> files;
+		try (Stream<Path> paths = Files.walk(viewsFolder)) {
+			files = paths.filter(Files::isRegularFile).toList();
+		}
+
+		int compiled = 0;
+		ViewRuntime runtime = null;
+		try {
+			for (Path file: files) {
+				String viewPath = "views/" + viewsFolder.relativize(file).toString().replace(File.separatorChar, '/');
+				if (!MVC.DEBUG && PrecompiledViews.get(viewPath) != null) continue;
+
+				try {
+					if (runtime == null) runtime = acquire();
+					runtime.compile(getTemplate(viewPath));
+					compiled++;
+				} catch (ScriptException e) {
+					System.out.println("Could not compile view %s: %s".formatted(viewPath, e.getMessage()));
+				}
+			}
+		} finally {
+			if (runtime != null) release(runtime);
+		}
+
+		return compiled;
+	}
+
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	public long getAcquisitions() {
+		return acquisitions.sum();
+	}
+
+	public double getAverageWaitMillis() {
+		long count = acquisitions.sum();
+		return count > 0 ? (double)waitNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+	}
+
+	public double getMaxWaitMillis() {
+		return (double)maxWaitNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	public SegmentedCache<String, ViewTemplate> getTemplateCache() {
+		return templates;
+	}
+}
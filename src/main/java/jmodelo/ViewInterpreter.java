@@ -18,108 +18,131 @@ package jmodelo;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import javax.script.Compilable;
-import javax.script.CompiledScript;
-import javax.script.ScriptContext;
-import javax.script.ScriptEngine;
+import javax.script.Bindings;
 import javax.script.ScriptException;
-import javax.script.SimpleScriptContext;
 
 public class ViewInterpreter {
-	private Pattern pattern;
-	private ScriptEngine scriptEngine;
+	private ViewEngine viewEngine;
 	private String area;
 	private String controllerName;
 	private Map<String, Object> viewData;
 	private Session session;
 	private Cookies cookies;
-	private SimpleScriptContext context;
+	private ViewRuntime runtime;
+	private String partialView;
+	private Writer output;
 
-	private static Map<String, CompiledScript> scriptCache;
-
-	public ViewInterpreter(ScriptEngine scriptEngine, String area, String controllerName, Map<String, Object> viewData,
+	public ViewInterpreter(ViewEngine viewEngine, String area, String controllerName, Map<String, Object> viewData,
 			Cookies cookies, Session session) {
-		this.scriptEngine = scriptEngine;
+		this.viewEngine = viewEngine;
 		this.area = area;
 		this.controllerName = controllerName;	
 		this.viewData = viewData;
 		this.cookies = cookies;
 		this.session = session;
-		this.pattern = Pattern.compile("<%([\\s\\S]*?)%>");
-
-		this.context = new SimpleScriptContext();
-
-		scriptCache = scriptCache == null ?	Collections.synchronizedMap(new Cache<>(40)) : scriptCache;
 	}
 
 	public String parseView(String viewFile, String layoutFile, Object model) throws IOException, ScriptException {
-		context.setAttribute("_partialView", viewFile, ScriptContext.ENGINE_SCOPE);
-		
-		return parsePartialView(layoutFile, model, true);
+		StringWriter output = new StringWriter();
+		renderView(viewFile, layoutFile, model, output);
+
+		return output.toString();
 	}
-	
-	public String parsePartialView(String viewFile, Object model, boolean includeHelpers) throws IOException, ScriptException {
-		String viewPath = Paths.get(viewFile).isAbsolute() ? viewFile : findViewPath(viewFile);
 
-		CompiledScript compiledScript = scriptCache.get(viewPath);
-		if (MVC.DEBUG || compiledScript == null) {
-			File f = new File(viewPath);
-			String contents = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
-			String finalScript =  "var _contents = \"\";\n" + generateViewScript(contents) + "\n_contents;";
+	public String parsePartialView(String viewFile, Object model, boolean includeHelpers) throws IOException, ScriptException {
+		StringWriter output = new StringWriter();
+		if (includeHelpers) {
+			render(viewFile, model, output);
+			return output.toString();
+		}
 
-			compiledScript = ((Compilable) scriptEngine).compile(finalScript);
-			scriptCache.put(viewPath, compiledScript);
+		Writer parentOutput = this.output;
+		this.output = output;
+		try {
+			renderPartialView(viewFile, model);
+		} finally {
+			this.output = parentOutput;
 		}
 
-		if (includeHelpers) scriptEngine.eval(getHelperFuncs(), this.context);
-		
-		context.setAttribute("_viewInterpreter", this, ScriptContext.ENGINE_SCOPE);
-		context.setAttribute("_model", model, ScriptContext.ENGINE_SCOPE);
-		context.setAttribute("_viewData", viewData, ScriptContext.ENGINE_SCOPE);
-		context.setAttribute("_cookies", cookies, ScriptContext.ENGINE_SCOPE);
-		context.setAttribute("_session", session, ScriptContext.ENGINE_SCOPE);
-		return (String)compiledScript.eval(this.context);
+		return output.toString();
 	}
 
-	private String generateViewScript(String contents) {
-		Matcher matcher = pattern.matcher(contents);
+	public void renderView(String viewFile, String layoutFile, Object model, Writer output) throws IOException, ScriptException {
+		this.partialView = viewFile;
 
-		List<String> scriptParts = new ArrayList<>();
-		while (matcher.find()) {
-			String code = matcher.group(1);
-			contents = contents.replaceFirst(Pattern.quote("<%" + code + "%>"), "<%%>");
-			scriptParts.add(code);
-		}
+		render(layoutFile, model, output);
+	}
+
+	public void render(String viewFile, Object model, Writer output) throws IOException, ScriptException {
+		this.output = output;
+
+		renderPartialView(viewFile, model);
+		output.flush();
+	}
 
-		String[] htmlParts = scriptParts.size() > 0 ? contents.split("<%%>") : new String[] {contents};
+	public void renderPartialView(String viewFile, Object model) throws IOException, ScriptException {
+		String viewPath = Paths.get(viewFile).isAbsolute() ? viewFile : findViewPath(viewFile);
 
-		for (String htmlPart: htmlParts) {
-			contents = contents.replaceFirst(Pattern.quote(htmlPart), "_contents += '%s';"
-					.formatted(htmlPart.replace("\r\n", "\n").replace("\n", "\\\\n").replace("'", "\\\\'")));
+		PrecompiledView precompiledView = MVC.DEBUG ? null : PrecompiledViews.get(viewPath);
+		if (precompiledView != null) {
+			precompiledView.render(this, model, output);
+			return;
 		}
 
-		for (String scriptPart: scriptParts) {
-			contents = contents.replaceFirst(Pattern.quote("<%%>"), scriptPart);
+		ViewTemplate template = viewEngine.getTemplate(viewPath);
+
+		boolean acquired = runtime == null;
+		if (acquired) acquireRuntime();
+		try {
+			Bindings bindings = runtime.getBindings();
+			Object parentModel = bindings.get("_model");
+			bindings.put("_model", model);
+			bindings.put("_out", output);
+			try {
+				runtime.eval(template);
+			} finally {
+				bindings.put("_model", parentModel);
+			}
+		} finally {
+			if (acquired) releaseRuntime();
 		}
+	}
+
+	public String getPartialView() {
+		return partialView;
+	}
 
-		return contents;
+	public Map<String, Object> getViewData() {
+		return viewData;
 	}
 
-	private String getHelperFuncs() {
-		return """
-				function _partial(view, model) {_contents += _viewInterpreter.parsePartialView(view, model, false);}
-				function _s(i) {_contents += i;}
-				""";
+	public Session getSession() {
+		return session;
+	}
+
+	public Cookies getCookies() {
+		return cookies;
+	}
+
+	private void acquireRuntime() throws ScriptException {
+		runtime = viewEngine.acquire();
+
+		Bindings bindings = runtime.getBindings();
+		bindings.put("_viewInterpreter", this);
+		bindings.put("_partialView", partialView);
+		bindings.put("_viewData", viewData);
+		bindings.put("_cookies", cookies);
+		bindings.put("_session", session);
+	}
+
+	private void releaseRuntime() {
+		viewEngine.release(runtime);
+		runtime = null;
 	}
 
 	private String findViewPath(String viewFile) throws FileNotFoundException {
@@ -130,6 +153,9 @@ public class ViewInterpreter {
 		};
 
 		for(String viewFilePath: potentialPaths) {
+			if (!MVC.DEBUG && PrecompiledViews.get(viewFilePath) != null)
+				return viewFilePath;
+
 			File f = new File(viewFilePath);
 			if (f.exists())
 				return viewFilePath;
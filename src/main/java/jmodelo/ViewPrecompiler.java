@@ -0,0 +1,460 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class ViewPrecompiler {
+	private static final String PACKAGE = "jmodelo.views";
+	private static final int MAX_LITERAL_LENGTH = 8192;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: ViewPrecompiler <views folder> <generated sources folder>");
+			System.exit(1);
+		}
+
+		precompile(Paths.get(args[0]), Paths.get(args[1]));
+	}
+
+	public static Map<String, String> precompile(Path viewsFolder, Path outputFolder) throws IOException {
+		Path packageFolder = outputFolder.resolve(PACKAGE.replace('.', File.separatorChar));
+		Files.createDirectories(packageFolder);
+		try (Stream<Path> files = Files.list(packageFolder)) {
+			for (Path f: files.filter(x -> x.toString().endsWith(".java")).toList())
+				Files.delete(f);
+		}
+
+		List<Path> templates;
+		try (Stream<Path> files = Files.walk(viewsFolder)) {
+			templates = files.filter(Files::isRegularFile).sorted().toList();
+		}
+
+		Map<String, String> views = new LinkedHashMap<>();
+		for (Path template: templates) {
+			String viewPath = "views/" + viewsFolder.relativize(template).toString().replace(File.separatorChar, '/');
+			String className = "View_" + viewPath.substring("views/".length()).replaceAll("[^A-Za-z0-9]", "_");
+			if (views.containsValue(className))
+				className += "_" + views.size();
+
+			try {
+				String contents = new String(Files.readAllBytes(template), StandardCharsets.UTF_8);
+				String source = new Translator(className, viewPath).translate(contents);
+
+				Files.writeString(packageFolder.resolve(className + ".java"), source, StandardCharsets.UTF_8);
+				views.put(viewPath, className);
+			} catch (IllegalArgumentException e) {
+				System.out.println("Not precompiled %s: %s".formatted(viewPath, e.getMessage()));
+			}
+		}
+
+		Files.writeString(packageFolder.resolve("PrecompiledViewIndex.java"), generateIndex(views), StandardCharsets.UTF_8);
+		System.out.println("Precompiled %d of %d views".formatted(views.size(), templates.size()));
+
+		return views;
+	}
+
+	private static String generateIndex(Map<String, String> views) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("package %s;\n\n".formatted(PACKAGE));
+		sb.append("import java.util.HashMap;\nimport java.util.Map;\nimport java.util.function.Supplier;\n\n");
+		sb.append("import jmodelo.PrecompiledView;\n\n");
+		sb.append("public class PrecompiledViewIndex implements Supplier<Map<String, PrecompiledView>> {\n");
+		sb.append("\t@Override\n\tpublic Map<String, PrecompiledView> get() {\n");
+		sb.append("\t\tMap<String, PrecompiledView> views = new HashMap<>();\n");
+		views.forEach((viewPath, className) ->
+			sb.append("\t\tviews.put(%s, new %s());\n".formatted(javaString(viewPath), className)));
+		sb.append("\t\treturn views;\n\t}\n}\n");
+
+		return sb.toString();
+	}
+
+	private static String javaString(String value) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"' -> sb.append("\\\"");
+			case '\\' -> sb.append("\\\\");
+			case '\n' -> sb.append("\\n");
+			case '\r' -> sb.append("\\r");
+			case '\t' -> sb.append("\\t");
+			default -> {
+				if (c < 0x20 || c > 0x7e)
+					sb.append("\\u%04x".formatted((int)c));
+				else
+					sb.append(c);
+			}
+			}
+		}
+
+		return sb.append('"').toString();
+	}
+
+	private record Token(String type, String text) {
+		@Override
+		public String toString() {
+			return text;
+		}
+	}
+
+	private static class Translator {
+		private String className;
+		private String viewPath;
+		private StringBuilder body;
+		private Deque<String> blocks;
+		private List<String> loopVariables;
+		private List<Token> tokens;
+		private int position;
+
+		public Translator(String className, String viewPath) {
+			this.className = className;
+			this.viewPath = viewPath;
+			this.body = new StringBuilder();
+			this.blocks = new ArrayDeque<>();
+			this.loopVariables = new ArrayList<>();
+		}
+
+		public String translate(String contents) {
+			for (ViewCompiler.ViewPart part: ViewCompiler.parse(contents)) {
+				if (part.code())
+					translateCode(part.text());
+				else
+					translateHtml(part.text());
+			}
+
+			if (!blocks.isEmpty())
+				throw new IllegalArgumentException("unclosed block");
+
+			return """
+					package %s;
+
+					import java.io.IOException;
+					import java.io.Writer;
+
+					import javax.script.ScriptException;
+
+					import jmodelo.PrecompiledView;
+					import jmodelo.ViewInterpreter;
+					import jmodelo.ViewSupport;
+
+					// Generated by jmodelo.ViewPrecompiler from %s
+					public class %s implements PrecompiledView {
+						@Override
+						public void render(ViewInterpreter _viewInterpreter, Object _model, Writer _out) throws IOException, ScriptException {
+							Object _viewData = _viewInterpreter.getViewData();
+							Object _session = _viewInterpreter.getSession();
+							Object _cookies = _viewInterpreter.getCookies();
+							Object _partialView = _viewInterpreter.getPartialView();
+					%s	}
+					}
+					""".formatted(PACKAGE, viewPath, className, body);
+		}
+
+		private void translateHtml(String html) {
+			html = html.replace("\r\n", "\n");
+			for (int i = 0; i < html.length(); i += MAX_LITERAL_LENGTH)
+				line("_out.write(%s);".formatted(javaString(html.substring(i, Math.min(html.length(), i + MAX_LITERAL_LENGTH)))));
+		}
+
+		private void translateCode(String code) {
+			tokens = tokenize(code);
+			position = 0;
+
+			while (!peek("end")) {
+				if (accept(";")) continue;
+
+				Token token = next();
+				switch (token.text()) {
+				case "_s" -> {
+					expect("(");
+					String value = expression();
+					expect(")");
+					line("_out.write(ViewSupport.toString(%s));".formatted(value));
+				}
+				case "_partial" -> {
+					expect("(");
+					String view = expression();
+					String model = accept(",") ? expression() : "null";
+					expect(")");
+					line("_viewInterpreter.renderPartialView(ViewSupport.toString(%s), %s);".formatted(view, model));
+				}
+				case "if" -> {
+					line("if (ViewSupport.truthy(%s)) {".formatted(condition()));
+					blocks.push("if");
+				}
+				case "for" -> {
+					expect("each");
+					expect("(");
+					expect("var");
+					String name = identifier();
+					if (loopVariables.contains(name))
+						throw new IllegalArgumentException("loop variable '%s' is already in use".formatted(name));
+					expect("in");
+					String values = expression();
+					expect(")");
+					expect("{");
+
+					line("for (Object v_%s: ViewSupport.iterate(%s)) {".formatted(name, values));
+					blocks.push("for");
+					loopVariables.add(name);
+				}
+				case "}" -> closeBlock();
+				default -> throw new IllegalArgumentException("unsupported statement '%s'".formatted(token));
+				}
+			}
+		}
+
+		private void closeBlock() {
+			if (blocks.isEmpty())
+				throw new IllegalArgumentException("unexpected '}'");
+
+			String block = blocks.pop();
+			if (block.equals("for"))
+				loopVariables.removeLast();
+
+			if (block.equals("for") || !accept("else")) {
+				line("}");
+				return;
+			}
+
+			if (accept("if")) {
+				line("} else if (ViewSupport.truthy(%s)) {".formatted(condition()));
+				blocks.push("if");
+				return;
+			}
+
+			expect("{");
+			line("} else {");
+			blocks.push("else");
+		}
+
+		private String condition() {
+			expect("(");
+			String condition = expression();
+			expect(")");
+			expect("{");
+
+			return condition;
+		}
+
+		private String expression() {
+			String left = and();
+			while (accept("||"))
+				left = "ViewSupport.or(%s, () -> %s)".formatted(left, and());
+
+			return left;
+		}
+
+		private String and() {
+			String left = equality();
+			while (accept("&&"))
+				left = "ViewSupport.and(%s, () -> %s)".formatted(left, equality());
+
+			return left;
+		}
+
+		private String equality() {
+			String left = relational();
+			while (true) {
+				if (accept("==="))
+					left = "ViewSupport.strictEquals(%s, %s)".formatted(left, relational());
+				else if (accept("!=="))
+					left = "!ViewSupport.strictEquals(%s, %s)".formatted(left, relational());
+				else if (accept("=="))
+					left = "ViewSupport.looseEquals(%s, %s)".formatted(left, relational());
+				else if (accept("!="))
+					left = "!ViewSupport.looseEquals(%s, %s)".formatted(left, relational());
+				else
+					return left;
+			}
+		}
+
+		private String relational() {
+			String left = unary();
+			while (peek("<") || peek(">") || peek("<=") || peek(">=")) {
+				String operator = next().text();
+				left = "(ViewSupport.compare(%s, %s) %s 0)".formatted(left, unary(), operator);
+			}
+
+			return left;
+		}
+
+		private String unary() {
+			if (accept("!"))
+				return "!ViewSupport.truthy(%s)".formatted(unary());
+
+			return postfix();
+		}
+
+		private String postfix() {
+			String target = primary();
+			while (true) {
+				if (accept(".")) {
+					String name = identifier();
+					if (accept("(")) {
+						StringBuilder call = new StringBuilder("ViewSupport.call(%s, %s".formatted(target, javaString(name)));
+						if (!accept(")")) {
+							do {
+								call.append(", ").append(expression());
+							} while (accept(","));
+							expect(")");
+						}
+						target = call.append(")").toString();
+					}else
+						target = "ViewSupport.property(%s, %s)".formatted(target, javaString(name));
+				}else if (accept("[")) {
+					target = "ViewSupport.index(%s, %s)".formatted(target, expression());
+					expect("]");
+				}else
+					return target;
+			}
+		}
+
+		private String primary() {
+			Token token = next();
+			switch (token.type()) {
+			case "number":
+				return token.text().contains(".") ? token.text() + "d" : token.text();
+			case "string":
+				return javaString(token.text());
+			case "identifier":
+				return switch (token.text()) {
+				case "true", "false", "null" -> "(Object)" + token.text();
+				case "undefined" -> "ViewSupport.UNDEFINED";
+				case "_model", "_viewData", "_session", "_cookies", "_partialView" -> token.text();
+				default -> {
+					if (!loopVariables.contains(token.text()))
+						throw new IllegalArgumentException("unknown variable '%s'".formatted(token));
+					yield "v_" + token.text();
+				}
+				};
+			default:
+				if (token.text().equals("(")) {
+					String value = expression();
+					expect(")");
+					return "(" + value + ")";
+				}
+				throw new IllegalArgumentException("unexpected '%s'".formatted(token));
+			}
+		}
+
+		private String identifier() {
+			Token token = next();
+			if (!token.type().equals("identifier"))
+				throw new IllegalArgumentException("expected a name but found '%s'".formatted(token));
+
+			return token.text();
+		}
+
+		private Token next() {
+			return tokens.get(position < tokens.size() - 1 ? position++ : position);
+		}
+
+		private boolean peek(String text) {
+			Token token = tokens.get(position);
+			return text.equals("end") ? token.type().equals("end") : !token.type().equals("string") && token.text().equals(text);
+		}
+
+		private boolean accept(String text) {
+			if (!peek(text)) return false;
+
+			position++;
+			return true;
+		}
+
+		private void expect(String text) {
+			if (!accept(text))
+				throw new IllegalArgumentException("expected '%s' but found '%s'".formatted(text, tokens.get(position)));
+		}
+
+		private void line(String code) {
+			body.append("\t".repeat(blocks.size() + 2));
+			body.append(code).append('\n');
+		}
+	}
+
+	private static List<Token> tokenize(String code) {
+		List<Token> tokens = new ArrayList<>();
+
+		int i = 0;
+		while (i < code.length()) {
+			char c = code.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			}else if (Character.isLetter(c) || c == '_' || c == '$') {
+				int start = i;
+				while (i < code.length() && (Character.isLetterOrDigit(code.charAt(i)) || code.charAt(i) == '_' || code.charAt(i) == '$'))
+					i++;
+				tokens.add(new Token("identifier", code.substring(start, i)));
+			}else if (Character.isDigit(c)) {
+				int start = i;
+				while (i < code.length() && (Character.isDigit(code.charAt(i)) || code.charAt(i) == '.'))
+					i++;
+				tokens.add(new Token("number", code.substring(start, i)));
+			}else if (c == '\'' || c == '"') {
+				StringBuilder value = new StringBuilder();
+				i++;
+				while (i < code.length() && code.charAt(i) != c) {
+					char ch = code.charAt(i++);
+					if (ch == '\\' && i < code.length()) {
+						char escaped = code.charAt(i++);
+						value.append(switch (escaped) {
+						case 'n' -> '\n';
+						case 't' -> '\t';
+						case 'r' -> '\r';
+						default -> escaped;
+						});
+					}else
+						value.append(ch);
+				}
+				if (i >= code.length())
+					throw new IllegalArgumentException("unterminated string");
+				i++;
+				tokens.add(new Token("string", value.toString()));
+			}else {
+				String operator = null;
+				for (String candidate: new String[] {"===", "!==", "==", "!=", "<=", ">=", "&&", "||",
+						"(", ")", "[", "]", "{", "}", ".", ",", ";", "!", "<", ">"}) {
+					if (code.startsWith(candidate, i)) {
+						operator = candidate;
+						break;
+					}
+				}
+				if (operator == null)
+					throw new IllegalArgumentException("unsupported character '%s'".formatted(c));
+
+				tokens.add(new Token("operator", operator));
+				i += operator.length();
+			}
+		}
+
+		tokens.add(new Token("end", "end of code block"));
+		return tokens;
+	}
+}
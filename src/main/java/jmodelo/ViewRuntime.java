@@ -0,0 +1,84 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+// The global scope of a runtime is shared by the view, the layout and the partials of one render, and is cleared when
+// the runtime is released.
+public class ViewRuntime {
+	// declared variables cannot be deleted, so they are set to undefined
+	private static final String RESET_SCRIPT = """
+			(function(global) {
+				for (var name in global) {
+					if (name !== '_partial' && name !== '_s' && !delete global[name]) global[name] = undefined;
+				}
+			})(this);
+			""";
+
+	private int id;
+	private ScriptEngine scriptEngine;
+	private Bindings bindings;
+	private CompiledScript resetScript;
+
+	public ViewRuntime(int id, ScriptEngine scriptEngine) throws ScriptException {
+		this.id = id;
+		this.scriptEngine = scriptEngine;
+		this.bindings = scriptEngine.createBindings();
+		this.resetScript = ((Compilable) scriptEngine).compile(RESET_SCRIPT);
+
+		scriptEngine.eval(getHelperFuncs(), bindings);
+	}
+
+	public Bindings getBindings() {
+		return bindings;
+	}
+
+	public void eval(ViewTemplate template) throws ScriptException {
+		compile(template).eval(bindings);
+	}
+
+	public CompiledScript compile(ViewTemplate template) throws ScriptException {
+		CompiledScript compiledScript = template.getCompiledScript(id);
+		if (compiledScript == null) {
+			compiledScript = ((Compilable) scriptEngine).compile(template.getScript());
+			template.setCompiledScript(id, compiledScript);
+		}
+
+		return compiledScript;
+	}
+
+	// Removes everything a render left in the global scope, the request attributes as well as the variables the views
+	// declared or assigned, so nothing is visible to the next request. Only the helper functions are kept.
+	public void reset() {
+		try {
+			resetScript.eval(bindings);
+		} catch (ScriptException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private String getHelperFuncs() {
+		return """
+				function _partial(view, model) {_viewInterpreter.renderPartialView(view, model);}
+				function _s(i) {_out.write(String(i));}
+				""";
+	}
+}
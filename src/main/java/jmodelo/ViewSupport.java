@@ -0,0 +1,339 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class ViewSupport {
+	// Missing properties, map keys and indexes, which Nashorn renders as "undefined" rather than "null".
+	public static final Object UNDEFINED = new Object() {
+		@Override
+		public String toString() {
+			return "undefined";
+		}
+	};
+
+	private static final Function<Object, Object> MISSING = x -> UNDEFINED;
+
+	private static final ClassValue<Map<String, Function<Object, Object>>> properties = new ClassValue<>() {
+		@Override
+		protected Map<String, Function<Object, Object>> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	private record MethodKey(String name, int parameterCount) {}
+
+	private static final ClassValue<Map<MethodKey, Method[]>> methods = new ClassValue<>() {
+		@Override
+		protected Map<MethodKey, Method[]> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+
+	public static String toString(Object value) {
+		if (value == null)
+			return "null";
+
+		if (value instanceof Double || value instanceof Float) {
+			double d = ((Number)value).doubleValue();
+			if (d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < 1e21)
+				return Long.toString((long)d);
+		}
+
+		return value.toString();
+	}
+
+	public static boolean truthy(Object value) {
+		if (value == null || value == UNDEFINED)
+			return false;
+		if (value instanceof Boolean b)
+			return b;
+		if (value instanceof Number n)
+			return n.doubleValue() != 0 && !Double.isNaN(n.doubleValue());
+		if (value instanceof CharSequence s)
+			return s.length() > 0;
+
+		return true;
+	}
+
+	public static Object or(Object left, Supplier<Object> right) {
+		return truthy(left) ? left : right.get();
+	}
+
+	public static Object and(Object left, Supplier<Object> right) {
+		return truthy(left) ? right.get() : left;
+	}
+
+	public static boolean strictEquals(Object left, Object right) {
+		if (left instanceof Number l && right instanceof Number r)
+			return l.doubleValue() == r.doubleValue();
+
+		return Objects.equals(left, right);
+	}
+
+	public static boolean looseEquals(Object left, Object right) {
+		if ((left == null || left == UNDEFINED) && (right == null || right == UNDEFINED))
+			return true;
+		if (left instanceof Number && right instanceof CharSequence)
+			return toNumber(right) == ((Number)left).doubleValue();
+		if (right instanceof Number && left instanceof CharSequence)
+			return toNumber(left) == ((Number)right).doubleValue();
+
+		return strictEquals(left, right);
+	}
+
+	public static int compare(Object left, Object right) {
+		if (left instanceof CharSequence && right instanceof CharSequence)
+			return left.toString().compareTo(right.toString());
+
+		return Double.compare(toNumber(left), toNumber(right));
+	}
+
+	public static Iterable<?> iterate(Object value) {
+		if (value == null || value == UNDEFINED)
+			return List.of();
+		if (value instanceof Map<?, ?> map)
+			return map.values();
+		if (value instanceof Iterable<?> iterable)
+			return iterable;
+		if (value.getClass().isArray()) {
+			return new AbstractList<Object>() {
+				@Override
+				public Object get(int index) {
+					return Array.get(value, index);
+				}
+
+				@Override
+				public int size() {
+					return Array.getLength(value);
+				}
+			};
+		}
+
+		return List.of(value);
+	}
+
+	public static Object index(Object target, Object index) {
+		if (target == null || target == UNDEFINED || index == null)
+			return null;
+
+		if (index instanceof Number n) {
+			int i = n.intValue();
+			if (target instanceof List<?> list)
+				return i >= 0 && i < list.size() ? list.get(i) : UNDEFINED;
+			if (target.getClass().isArray())
+				return i >= 0 && i < Array.getLength(target) ? Array.get(target, i) : UNDEFINED;
+			if (target instanceof CharSequence s)
+				return i >= 0 && i < s.length() ? String.valueOf(s.charAt(i)) : UNDEFINED;
+		}
+
+		if (target instanceof Map<?, ?> map) {
+			if (map.containsKey(index)) return map.get(index);
+
+			String key = toString(index);
+			return map.containsKey(key) ? map.get(key) : UNDEFINED;
+		}
+
+		return property(target, toString(index));
+	}
+
+	public static Object property(Object target, String name) {
+		if (target == null || target == UNDEFINED)
+			return null;
+
+		if (target instanceof Map<?, ?> map)
+			return map.containsKey(name) ? map.get(name) : UNDEFINED;
+
+		if (name.equals("length")) {
+			if (target instanceof List<?> list)
+				return list.size();
+			if (target.getClass().isArray())
+				return Array.getLength(target);
+			if (target instanceof CharSequence s)
+				return s.length();
+		}
+
+		return properties.get(target.getClass()).computeIfAbsent(name, x -> findProperty(target.getClass(), x))
+				.apply(target);
+	}
+
+	public static Object call(Object target, String name, Object... args) {
+		if (target == null || target == UNDEFINED)
+			return null;
+
+		for (int i = 0; i < args.length; i++) {
+			if (args[i] == UNDEFINED) args[i] = null;
+		}
+
+		Method[] candidates = methods.get(target.getClass()).computeIfAbsent(new MethodKey(name, args.length),
+				x -> findMethods(target.getClass(), x));
+		for (Method method: candidates) {
+			Object[] converted = convertArguments(method.getParameterTypes(), args);
+			if (converted != null)
+				return invoke(method, target, converted);
+		}
+
+		throw new IllegalArgumentException("No method %s with %d arguments in %s".formatted(name, args.length,
+				target.getClass().getName()));
+	}
+
+	private static Method[] findMethods(Class<?> type, MethodKey key) {
+		return Arrays.stream(type.getMethods())
+				.filter(x -> x.getName().equals(key.name()) && x.getParameterCount() == key.parameterCount())
+				.map(x -> accessibleMethod(type, x))
+				.filter(Objects::nonNull)
+				.toArray(Method[]::new);
+	}
+
+	private static Function<Object, Object> findProperty(Class<?> type, String name) {
+		String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		for (String methodName: new String[] {"get" + suffix, "is" + suffix, name}) {
+			try {
+				Method method = type.getMethod(methodName);
+				if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() == void.class)
+					continue;
+
+				Method accessible = accessibleMethod(type, method);
+				if (accessible != null)
+					return x -> invoke(accessible, x);
+			} catch (NoSuchMethodException e) {}
+		}
+
+		try {
+			Field field = type.getField(name);
+			if (!isExported(field.getDeclaringClass()) && !field.trySetAccessible())
+				return MISSING;
+
+			return x -> {
+				try {
+					return field.get(x);
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException(e);
+				}
+			};
+		} catch (NoSuchFieldException e) {
+			return MISSING;
+		}
+	}
+
+	// Public methods of classes that are not public themselves (like the List.of implementations) can only be invoked
+	// through a public class or interface that declares them, which is how Nashorn finds them as well.
+	private static Method accessibleMethod(Class<?> type, Method method) {
+		if (isExported(method.getDeclaringClass()))
+			return method;
+
+		Method found = findPublicMethod(type, method.getName(), method.getParameterTypes());
+		if (found != null)
+			return found;
+
+		// classes of the application are not encapsulated, so their members can be made accessible
+		return method.trySetAccessible() ? method : null;
+	}
+
+	private static Method findPublicMethod(Class<?> type, String name, Class<?>[] parameterTypes) {
+		if (type == null)
+			return null;
+
+		if (isExported(type)) {
+			try {
+				Method method = type.getMethod(name, parameterTypes);
+				if (isExported(method.getDeclaringClass())) return method;
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+		}
+
+		for (Class<?> interfaceType: type.getInterfaces()) {
+			Method method = findPublicMethod(interfaceType, name, parameterTypes);
+			if (method != null) return method;
+		}
+
+		return findPublicMethod(type.getSuperclass(), name, parameterTypes);
+	}
+
+	private static boolean isExported(Class<?> type) {
+		return Modifier.isPublic(type.getModifiers()) && type.getModule().isExported(type.getPackageName());
+	}
+
+	// Exceptions thrown by the invoked method are passed on, so a failing view fails like it does in Nashorn.
+	private static Object invoke(Method method, Object target, Object... args) {
+		try {
+			return method.invoke(target, args);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException cause)
+				throw cause;
+			if (e.getCause() instanceof Error cause)
+				throw cause;
+			throw new UndeclaredThrowableException(e.getCause());
+		}
+	}
+
+	private static Object[] convertArguments(Class<?>[] types, Object[] args) {
+		Object[] converted = new Object[args.length];
+		for (int i = 0; i < args.length; i++) {
+			Class<?> type = types[i];
+			Object arg = args[i];
+
+			if (arg instanceof Number n && (type == int.class || type == Integer.class))
+				converted[i] = n.intValue();
+			else if (arg instanceof Number n && (type == long.class || type == Long.class))
+				converted[i] = n.longValue();
+			else if (arg instanceof Number n && (type == double.class || type == Double.class))
+				converted[i] = n.doubleValue();
+			else if (arg == null && !type.isPrimitive())
+				converted[i] = null;
+			else if (arg != null && (type.isInstance(arg) || (type == boolean.class && arg instanceof Boolean)))
+				converted[i] = arg;
+			else if (type == String.class)
+				converted[i] = toString(arg);
+			else
+				return null;
+		}
+
+		return converted;
+	}
+
+	private static double toNumber(Object value) {
+		if (value == null)
+			return 0;
+		if (value instanceof Number n)
+			return n.doubleValue();
+		if (value instanceof Boolean b)
+			return b ? 1 : 0;
+
+		try {
+			return Double.parseDouble(value.toString().trim());
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.script.CompiledScript;
+
+public class ViewTemplate {
+	private String viewPath;
+	private String script;
+	private AtomicReferenceArray<CompiledScript> compiledScripts;
+
+	public ViewTemplate(String viewPath, String script, int runtimes) {
+		this.viewPath = viewPath;
+		this.script = script;
+		this.compiledScripts = new AtomicReferenceArray<>(runtimes);
+	}
+
+	public String getViewPath() {
+		return viewPath;
+	}
+
+	public String getScript() {
+		return script;
+	}
+
+	public CompiledScript getCompiledScript(int runtimeId) {
+		return compiledScripts.get(runtimeId);
+	}
+
+	public void setCompiledScript(int runtimeId, CompiledScript compiledScript) {
+		compiledScripts.set(runtimeId, compiledScript);
+	}
+}
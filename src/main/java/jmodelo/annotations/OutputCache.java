@@ -0,0 +1,39 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo.annotations;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+// Caches the response of a GET action for duration seconds. A separate response is cached for every combination of
+// url arguments and of the listed query parameters, headers and cookies; "*" in varyByParam stands for all of them.
+// For staleWhileRevalidate seconds after expiring, the old response is still served while it is refreshed in the background.
+@Retention(RUNTIME)
+@Target(METHOD)
+public @interface OutputCache {
+	int duration();
+
+	int staleWhileRevalidate() default 0;
+
+	String[] varyByParam() default {};
+
+	String[] varyByHeader() default {};
+
+	String[] varyByCookie() default {};
+}
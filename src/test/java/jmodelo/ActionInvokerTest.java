@@ -0,0 +1,113 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import jmodelo.annotations.UrlArg;
+
+class ActionInvokerTest {
+
+	public static class ShopController extends Controller {
+		public ActionResult index() {
+			return html("index");
+		}
+
+		public ActionResult show(@UrlArg(0) int id, @UrlArg(1) String name, @UrlArg(2) double price, PostData postData) {
+			return html("%d %s %.2f %s".formatted(id, name, price, postData != null ? postData.fields().get("x") : null));
+		}
+
+		public ActionResult many(@UrlArg(0) int a, @UrlArg(1) int b, @UrlArg(2) int c, @UrlArg(3) int d, @UrlArg(4) int e,
+				@UrlArg(5) int f, @UrlArg(6) int g) {
+			return html(String.valueOf(a + b + c + d + e + f + g));
+		}
+
+		public ActionResult fail() throws IOException {
+			throw new IOException("failed");
+		}
+
+		public ActionResult error() {
+			throw new AssertionError("error");
+		}
+	}
+
+	static class HiddenController extends Controller {
+		public ActionResult show(@UrlArg(0) int id) {
+			return html("hidden " + id);
+		}
+	}
+
+	@Test
+	void invokesActionWithoutParameters() throws Exception {
+		assertEquals("index", call(ShopController.class, "index", List.of(), null));
+	}
+
+	@Test
+	void bindsParameters() throws Exception {
+		PostData postData = new PostData(Map.of("x", "posted"), Map.of());
+
+		assertEquals("42 pen 1.50 posted", call(ShopController.class, "show", List.of("42", "pen", "1.5"), postData));
+	}
+
+	@Test
+	void missingPrimitiveParameterFails() {
+		assertThrows(NullPointerException.class, () -> call(ShopController.class, "show", List.of("1", "pen"), null));
+	}
+
+	@Test
+	void invokesActionWithManyParameters() throws Exception {
+		assertEquals("28", call(ShopController.class, "many", List.of("1", "2", "3", "4", "5", "6", "7"), null));
+	}
+
+	@Test
+	void invokesActionOfClassThatIsNotPublic() throws Exception {
+		assertEquals("hidden 3", call(HiddenController.class, "show", List.of("3"), null));
+	}
+
+	@Test
+	void exceptionsAreThrownAsTheyAre() {
+		assertEquals("failed", assertThrows(IOException.class, () -> call(ShopController.class, "fail", List.of(), null))
+				.getMessage());
+	}
+
+	@Test
+	void errorsAreWrapped() {
+		InvocationTargetException e = assertThrows(InvocationTargetException.class,
+				() -> call(ShopController.class, "error", List.of(), null));
+		assertInstanceOf(AssertionError.class, e.getCause());
+	}
+
+	private static String call(Class<? extends Controller> controllerClass, String actionName, List<String> urlArgs,
+			PostData postData) throws Exception {
+		Method method = List.of(controllerClass.getDeclaredMethods()).stream().filter(x -> x.getName().equals(actionName))
+				.findFirst().orElseThrow();
+		ActionInvoker invoker = new ActionInvoker(controllerClass, method);
+
+		ActionResult result = invoker.invoke(invoker.newController(), Map.of(), urlArgs, postData);
+		return new String(result.contentBuffer(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,88 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class ByteRangeTest {
+	private static final long SIZE = 1000;
+
+	@Test
+	void parsesClosedRange() {
+		ByteRange range = ByteRange.parse("bytes=0-99", SIZE);
+
+		assertEquals(new ByteRange(0, 99), range);
+		assertEquals(100, range.length());
+		assertEquals("bytes 0-99/1000", range.contentRange(SIZE));
+	}
+
+	@Test
+	void openRangeEndsAtLastByte() {
+		assertEquals(new ByteRange(500, 999), ByteRange.parse("bytes=500-", SIZE));
+	}
+
+	@Test
+	void endPastSizeIsClamped() {
+		assertEquals(new ByteRange(900, 999), ByteRange.parse("bytes=900-2000", SIZE));
+	}
+
+	@Test
+	void singleByteRange() {
+		assertEquals(1, ByteRange.parse("bytes=999-999", SIZE).length());
+	}
+
+	@Test
+	void suffixRangeCountsFromEnd() {
+		assertEquals(new ByteRange(900, 999), ByteRange.parse("bytes=-100", SIZE));
+	}
+
+	@Test
+	void suffixLongerThanFileReturnsWholeFile() {
+		assertEquals(new ByteRange(0, 999), ByteRange.parse("bytes=-5000", SIZE));
+	}
+
+	@Test
+	void emptySuffixIsUnsatisfiable() {
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-0", SIZE));
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=-10", 0));
+	}
+
+	@Test
+	void startPastEndOfFileIsUnsatisfiable() {
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=1000-", SIZE));
+		assertSame(ByteRange.UNSATISFIABLE, ByteRange.parse("bytes=2000-3000", SIZE));
+	}
+
+	@Test
+	void multipleRangesAreIgnored() {
+		assertNull(ByteRange.parse("bytes=0-99,200-299", SIZE));
+		assertNull(ByteRange.parse("bytes=-100, 0-1", SIZE));
+	}
+
+	@Test
+	void invalidHeadersAreIgnored() {
+		assertNull(ByteRange.parse(null, SIZE));
+		assertNull(ByteRange.parse("items=0-99", SIZE));
+		assertNull(ByteRange.parse("bytes=100", SIZE));
+		assertNull(ByteRange.parse("bytes=a-b", SIZE));
+		assertNull(ByteRange.parse("bytes=-", SIZE));
+		assertNull(ByteRange.parse("bytes=99-0", SIZE));
+	}
+}
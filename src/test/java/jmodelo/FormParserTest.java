@@ -0,0 +1,113 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class FormParserTest {
+
+	@Test
+	void parsesPairs() {
+		assertEquals(Map.of("a", "1", "b", "2"), FormParser.parseQuery("a=1&b=2"));
+	}
+
+	@Test
+	void emptyQueries() {
+		assertEquals(Map.of(), FormParser.parseQuery(null));
+		assertEquals(Map.of(), FormParser.parseQuery(""));
+		assertEquals(Map.of("a", "1"), FormParser.parseQuery("&&a=1&"));
+	}
+
+	@Test
+	void missingValuesAreEmpty() {
+		assertEquals(Map.of("a", "", "b", "", "", "c"), FormParser.parseQuery("a&b=&=c"));
+	}
+
+	@Test
+	void lastRepeatedParameterWins() {
+		assertEquals(Map.of("a", "2"), FormParser.parseQuery("a=1&a=2"));
+	}
+
+	@Test
+	void encodedSeparatorsStayInValue() {
+		assertEquals(Map.of("q", "a&b=c", "k y", "v"), FormParser.parseQuery("q=a%26b%3Dc&k%20y=v"));
+		assertEquals(Map.of("eq", "a=b"), FormParser.parseQuery("eq=a=b"));
+	}
+
+	@Test
+	void decodesPlusAsSpace() {
+		assertEquals("a b+c", FormParser.decode("a+b%2Bc", 0, 7));
+	}
+
+	@Test
+	void decodesUtf8() {
+		assertEquals(Map.of("name", "Ελένη €"), FormParser.parseQuery("name=%CE%95%CE%BB%CE%AD%CE%BD%CE%B7+%e2%82%ac"));
+	}
+
+	@Test
+	void decodesRange() {
+		assertEquals("b c", FormParser.decode("a=b%20c&d", 2, 7));
+	}
+
+	@Test
+	void malformedEscapesAreKept() {
+		assertEquals("100%", FormParser.decode("100%", 0, 4));
+		assertEquals("%4", FormParser.decode("%4", 0, 2));
+		assertEquals("%zz%4g", FormParser.decode("%zz%4g", 0, 6));
+		assertEquals("a%A", FormParser.decode("a%%41", 0, 5));
+		assertEquals("A%4", FormParser.decode("%41%4", 0, 5));
+	}
+
+	@Test
+	void invalidUtf8IsReplaced() {
+		assertEquals("a�b", FormParser.decode("a%e2%82b", 0, 8));
+		assertEquals("�", FormParser.decode("%ff", 0, 3));
+	}
+
+	@Test
+	void parsesCookies() {
+		assertEquals(Map.of("a", "1", "b", "2"), cookies("a=1; b=2"));
+		assertEquals(Map.of("a", "1", "b", "2"), cookies("  a = 1 ;b=2;  "));
+	}
+
+	@Test
+	void cookieValuesAreNotDecoded() {
+		assertEquals(Map.of("t", "a%20b+c", "s", "x=y"), cookies("t=a%20b+c; s=x=y"));
+	}
+
+	@Test
+	void cookiesWithoutNameAreIgnored() {
+		assertEquals(Map.of("a", "1"), cookies("=x; flag; a=1; ;"));
+		assertEquals(Map.of(), cookies(""));
+	}
+
+	@Test
+	void firstRepeatedCookieWins() {
+		assertEquals(Map.of("id", "specific"), cookies("id=specific; id=general"));
+	}
+
+	private static Map<String, String> cookies(String header) {
+		Map<String, String> cookies = new HashMap<>();
+		FormParser.parseCookies(header, cookies);
+
+		return cookies;
+	}
+}
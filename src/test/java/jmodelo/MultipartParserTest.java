@@ -0,0 +1,264 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class MultipartParserTest {
+	private static final String BOUNDARY = "----jmodelo7MA4YWxkTrZu0gW";
+
+	@TempDir
+	Path tempFolder;
+
+	private UploadPolicy uploadPolicy;
+
+	@BeforeEach
+	void createPolicy() {
+		uploadPolicy = new UploadPolicy(tempFolder.toFile());
+	}
+
+	@Test
+	void parsesFieldsAndFiles() throws IOException {
+		byte[] body = new Body()
+				.field("name", "Ελένη")
+				.file("avatar", "me.png", "image/png", new byte[] { 1, 2, 3 })
+				.end();
+
+		PostData postData = parse(body);
+
+		assertEquals(Map.of("name", "Ελένη"), postData.fields());
+		PostFile file = postData.files().get("avatar");
+		assertEquals("me.png", file.fileName());
+		assertEquals("image/png", file.contentType());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, file.getBytes());
+		assertTrue(file.isInMemory());
+	}
+
+	@Test
+	void ignoresPreambleEpilogueAndPartsWithoutName() throws IOException {
+		byte[] body = new Body()
+				.raw("preamble\r\n")
+				.part("Content-Disposition: form-data", "skipped")
+				.part("content-disposition: form-data; name=\"a\"", "1")
+				.end("\r\nepilogue");
+
+		assertEquals(Map.of("a", "1"), parse(body).fields());
+	}
+
+	@Test
+	void emptyBody() throws IOException {
+		PostData postData = parse(new Body().end());
+
+		assertTrue(postData.fields().isEmpty());
+		assertTrue(postData.files().isEmpty());
+	}
+
+	// every read returns at most chunkSize bytes, so boundaries and part headers are split across reads
+	@ParameterizedTest
+	@ValueSource(ints = { 1, 2, 3, 7, 41, 4096 })
+	void boundariesSplitAcrossReads(int chunkSize) throws IOException {
+		byte[] content = content(200_000);
+		byte[] body = new Body()
+				.field("first", "a\r\n--b")
+				.file("upload", "data.bin", "application/octet-stream", content)
+				.field("last", "z")
+				.end();
+
+		PostData postData = new MultipartParser(new ChunkedInputStream(body, chunkSize), BOUNDARY, uploadPolicy).parse();
+
+		assertEquals(Map.of("first", "a\r\n--b", "last", "z"), postData.fields());
+		assertArrayEquals(content, postData.files().get("upload").getBytes());
+	}
+
+	@Test
+	void contentResemblingBoundaryIsKept() throws IOException {
+		String value = "\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "\r\n-" + BOUNDARY;
+
+		assertEquals(value, parse(new Body().field("v", value).end()).fields().get("v"));
+	}
+
+	@Test
+	void largeFilesGoToTempFolder() throws IOException {
+		uploadPolicy.setMemoryThreshold(1000);
+		byte[] content = content(5000);
+
+		PostFile file = parse(new Body().file("f", "big.bin", null, content).end()).files().get("f");
+
+		assertFalse(file.isInMemory());
+		assertEquals(tempFolder.toFile(), file.tempFile().getParentFile());
+		assertEquals(5000, file.size());
+		assertArrayEquals(content, file.getBytes());
+	}
+
+	@Test
+	void fieldLargerThanLimitIsRejected() {
+		uploadPolicy.setMaxFieldSize(10);
+
+		assertThrows(PayloadTooLargeException.class, () -> parse(new Body().field("f", "12345678901").end()));
+	}
+
+	@Test
+	void fileLargerThanLimitIsRejectedAndDeleted() {
+		uploadPolicy.setMemoryThreshold(100);
+		uploadPolicy.setMaxFileSize(1000);
+
+		assertThrows(PayloadTooLargeException.class, () -> parse(new Body().file("f", "big.bin", null, content(1001)).end()));
+		assertEquals(0, tempFiles());
+	}
+
+	@Test
+	void earlierFilesAreDeletedWhenParsingFails() throws Exception {
+		uploadPolicy.setMemoryThreshold(100);
+		byte[] body = new Body().file("f", "a.bin", null, content(1000)).raw("--" + BOUNDARY + "\r\n").raw("truncated").build();
+
+		assertThrows(IOException.class, () -> parse(body));
+		for (int i = 0; i < 50 && tempFiles() > 0; i++)
+			Thread.sleep(20);
+		assertEquals(0, tempFiles());
+	}
+
+	@Test
+	void requestLargerThanLimitIsRejected() {
+		uploadPolicy.setMaxRequestSize(1000);
+		byte[] body = new Body().file("f", "a.bin", null, content(2000)).end();
+
+		assertThrows(PayloadTooLargeException.class,
+				() -> new MultipartParser(uploadPolicy.limitRequestBody(new ByteArrayInputStream(body)), BOUNDARY, uploadPolicy).parse());
+	}
+
+	@Test
+	void truncatedBodyFails() {
+		byte[] body = new Body().field("a", "1").build();
+
+		assertThrows(IOException.class, () -> parse(body));
+		assertThrows(IOException.class, () -> parse(new byte[0]));
+	}
+
+	@Test
+	void readsBoundaryFromContentType() {
+		assertEquals("abc", MultipartParser.getBoundary("multipart/form-data; boundary=abc"));
+		assertEquals("a b", MultipartParser.getBoundary("multipart/form-data; charset=utf-8; boundary=\"a b\""));
+		assertNull(MultipartParser.getBoundary("multipart/form-data"));
+		assertNull(MultipartParser.getBoundary("multipart/form-data; boundary="));
+	}
+
+	@Test
+	void sweepDeletesOnlyTempFiles() throws IOException {
+		Files.createFile(tempFolder.resolve("left.temp"));
+		Files.createFile(tempFolder.resolve("other.txt"));
+
+		assertEquals(1, uploadPolicy.sweepTempFolder());
+		assertTrue(Files.exists(tempFolder.resolve("other.txt")));
+	}
+
+	private PostData parse(byte[] body) throws IOException {
+		return new MultipartParser(new ByteArrayInputStream(body), BOUNDARY, uploadPolicy).parse();
+	}
+
+	private int tempFiles() {
+		return tempFolder.toFile().listFiles((dir, name) -> name.endsWith(".temp")).length;
+	}
+
+	// bytes with line breaks and dashes, so that the search for the boundary has partial matches
+	private static byte[] content(int size) {
+		byte[] alphabet = "\r\n-ab".getBytes(StandardCharsets.ISO_8859_1);
+		Random random = new Random(size);
+		byte[] content = new byte[size];
+		for (int i = 0; i < size; i++)
+			content[i] = alphabet[random.nextInt(alphabet.length)];
+
+		return content;
+	}
+
+	private static class Body {
+		private ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		Body field(String name, String value) {
+			return part("Content-Disposition: form-data; name=\"%s\"".formatted(name), value);
+		}
+
+		Body file(String name, String fileName, String contentType, byte[] content) {
+			raw("--" + BOUNDARY + "\r\n");
+			raw("Content-Disposition: form-data; name=\"%s\"; filename=\"%s\"\r\n".formatted(name, fileName));
+			if (contentType != null) raw("Content-Type: " + contentType + "\r\n");
+			raw("\r\n");
+			output.writeBytes(content);
+			return raw("\r\n");
+		}
+
+		Body part(String contentDisposition, String value) {
+			return raw("--" + BOUNDARY + "\r\n" + contentDisposition + "\r\n\r\n" + value + "\r\n");
+		}
+
+		Body raw(String text) {
+			output.writeBytes(text.getBytes(StandardCharsets.UTF_8));
+			return this;
+		}
+
+		byte[] end() {
+			return end("\r\n");
+		}
+
+		byte[] end(String epilogue) {
+			return raw("--" + BOUNDARY + "--" + epilogue).build();
+		}
+
+		byte[] build() {
+			return output.toByteArray();
+		}
+	}
+
+	private static class ChunkedInputStream extends InputStream {
+		private ByteArrayInputStream input;
+		private int chunkSize;
+
+		ChunkedInputStream(byte[] data, int chunkSize) {
+			this.input = new ByteArrayInputStream(data);
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		public int read() {
+			return input.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			return input.read(b, off, Math.min(len, chunkSize));
+		}
+	}
+}
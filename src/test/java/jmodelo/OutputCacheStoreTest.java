@@ -0,0 +1,109 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.lang.reflect.Method;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.Headers;
+
+import jmodelo.annotations.OutputCache;
+
+class OutputCacheStoreTest {
+
+	public static class PagesController extends Controller {
+		@OutputCache(duration = 60)
+		public ActionResult home() {
+			return html("home");
+		}
+
+		@OutputCache(duration = 60)
+		public ActionResult about() {
+			return html("about");
+		}
+	}
+
+	private OutputCacheStore store;
+	private Route home;
+	private Route about;
+
+	@BeforeEach
+	void setup() throws Exception {
+		store = new OutputCacheStore(new CompressionPolicy());
+		home = route("home");
+		about = route("about");
+	}
+
+	@Test
+	void storedResponseIsHit() throws Exception {
+		put(home, store.getGeneration(home));
+
+		assertNotNull(store.get(home, "home"));
+		assertEquals(1, store.getHits());
+	}
+
+	@Test
+	void invalidateDropsOnlyItsRoute() throws Exception {
+		put(home, store.getGeneration(home));
+		put(about, store.getGeneration(about));
+
+		store.invalidate(PagesController.class, "home");
+
+		assertNull(store.get(home, "home"));
+		assertNotNull(store.get(about, "about"));
+	}
+
+	@Test
+	void invalidateAllDropsEveryRoute() throws Exception {
+		put(home, store.getGeneration(home));
+		put(about, store.getGeneration(about));
+
+		store.invalidateAll();
+
+		assertEquals(0, store.size());
+		assertNull(store.get(home, "home"));
+		assertNull(store.get(about, "about"));
+	}
+
+	@Test
+	void responseComputedDuringInvalidateAllIsOutdated() throws Exception {
+		long generation = store.getGeneration(home);
+		store.invalidateAll();
+		put(home, generation);
+
+		assertNull(store.get(home, "home"));
+
+		put(home, store.getGeneration(home));
+		assertNotNull(store.get(home, "home"));
+	}
+
+	private void put(Route route, long generation) throws Exception {
+		ActionResult result = new ActionResult(route.method().getName().getBytes(), "text/html", 200);
+		assertNotNull(store.put(route, route.method().getName(), generation, result, new Headers()));
+	}
+
+	private static Route route(String actionName) throws Exception {
+		Method method = PagesController.class.getMethod(actionName);
+		return new Route(PagesController.class, method, false, false, method.getAnnotation(OutputCache.class),
+				new ActionInvoker(PagesController.class, method));
+	}
+}
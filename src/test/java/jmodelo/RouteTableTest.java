@@ -0,0 +1,66 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import jmodelo.routes.ShopController;
+import jmodelo.routes.admin.UsersController;
+
+class RouteTableTest {
+	private static RouteTable routeTable;
+
+	@BeforeAll
+	static void scan() throws IOException {
+		routeTable = RouteTable.scan("jmodelo.routes", List.of("Admin"));
+	}
+
+	@Test
+	void findsControllerIgnoringCase() {
+		assertEquals(Optional.of(ShopController.class), routeTable.getController(null, "shop"));
+		assertEquals(Optional.of(ShopController.class), routeTable.getController(null, "Shop"));
+		assertEquals(Optional.of(ShopController.class), routeTable.getController(null, "SHOP"));
+	}
+
+	@Test
+	void findsControllerOfArea() {
+		assertEquals(Optional.of(UsersController.class), routeTable.getController("Admin", "users"));
+		assertTrue(routeTable.getController(null, "users").isEmpty());
+		assertTrue(routeTable.getController("Admin", "shop").isEmpty());
+		assertTrue(routeTable.getController("Other", "users").isEmpty());
+	}
+
+	@Test
+	void unknownControllerIsEmpty() {
+		assertTrue(routeTable.getController(null, "missing").isEmpty());
+		assertTrue(routeTable.getController(null, "").isEmpty());
+	}
+
+	@Test
+	void findsRouteByRequestMethod() {
+		assertTrue(routeTable.getRoute(ShopController.class, "GET", "index").isPresent());
+		assertTrue(routeTable.getRoute(ShopController.class, "POST", "buy").isPresent());
+		assertTrue(routeTable.getRoute(ShopController.class, "GET", "buy").isEmpty());
+	}
+}
@@ -0,0 +1,60 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class StaticFileTest {
+	private static final long LAST_MODIFIED = 1_700_000_000_000L;
+	private static final String LAST_MODIFIED_DATE = "Tue, 14 Nov 2023 22:13:20 GMT";
+
+	@Test
+	void ifRangeIsOptional() {
+		assertTrue(file("W/\"5-1\"").matchesIfRange(null));
+	}
+
+	@Test
+	void weakEtagNeverMatchesIfRange() {
+		StaticFile file = file("W/\"5-1\"");
+
+		assertFalse(file.matchesIfRange("W/\"5-1\""));
+		assertFalse(file.matchesIfRange("\"5-1\""));
+	}
+
+	@Test
+	void strongEtagMatchesIfRange() {
+		StaticFile file = file("\"5-1\"");
+
+		assertTrue(file.matchesIfRange("\"5-1\""));
+		assertFalse(file.matchesIfRange("W/\"5-1\""));
+		assertFalse(file.matchesIfRange("\"5-2\""));
+	}
+
+	@Test
+	void lastModifiedDateMatchesIfRange() {
+		StaticFile file = file("W/\"5-1\"");
+
+		assertTrue(file.matchesIfRange(LAST_MODIFIED_DATE));
+		assertFalse(file.matchesIfRange("Wed, 15 Nov 2023 22:13:20 GMT"));
+	}
+
+	private static StaticFile file(String etag) {
+		return new StaticFile(null, null, "hello".getBytes(), null, "text/plain", 5, LAST_MODIFIED, etag, 0);
+	}
+}
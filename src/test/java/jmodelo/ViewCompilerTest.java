@@ -0,0 +1,100 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.nashorn.api.scripting.NashornScriptEngineFactory;
+
+import jmodelo.ViewCompiler.ViewPart;
+
+class ViewCompilerTest {
+
+	@Test
+	void splitsTextAndCode() {
+		assertEquals(List.of(new ViewPart(false, "<p>"), new ViewPart(true, " _s(x) "), new ViewPart(false, "</p>")),
+				ViewCompiler.parse("<p><% _s(x) %></p>"));
+	}
+
+	@Test
+	void textOnly() {
+		assertEquals(List.of(new ViewPart(false, "<p>hello</p>")), ViewCompiler.parse("<p>hello</p>"));
+		assertEquals(List.of(), ViewCompiler.parse(""));
+	}
+
+	@Test
+	void adjacentBlocksHaveNoTextBetween() {
+		assertEquals(List.of(new ViewPart(true, "a"), new ViewPart(true, "b")), ViewCompiler.parse("<%a%><%b%>"));
+		assertEquals(List.of(new ViewPart(true, "")), ViewCompiler.parse("<%%>"));
+	}
+
+	@Test
+	void closingMarkerInTextIsText() {
+		assertEquals(List.of(new ViewPart(false, "50%> "), new ViewPart(true, "x")), ViewCompiler.parse("50%> <%x%>"));
+	}
+
+	@Test
+	void unclosedBlockIsText() {
+		assertEquals(List.of(new ViewPart(false, "a"), new ViewPart(true, "b"), new ViewPart(false, " <% c")),
+				ViewCompiler.parse("a<%b%> <% c"));
+	}
+
+	// like the regular expression the views were parsed with before, a block ends at the first %>, even in a string
+	@Test
+	void blockEndsAtFirstClosingMarker() {
+		assertEquals(List.of(new ViewPart(true, " var s = '"), new ViewPart(false, "'; %>")),
+				ViewCompiler.parse("<% var s = '%>'; %>"));
+		assertEquals(List.of(new ViewPart(true, " a <% b ")), ViewCompiler.parse("<% a <% b %>"));
+	}
+
+	@Test
+	void compilesTextToWrites() {
+		assertEquals("_out.write('<p>');if (a) {_out.write('\\'y\\'');}_out.write('</p>');",
+				ViewCompiler.compile("<p><%if (a) {%>'y'<%}%></p>"));
+	}
+
+	@Test
+	void escapesText() {
+		assertEquals("_out.write('a\\\\b\\nc\\nd\\ne\\u2028');", ViewCompiler.compile("a\\b\nc\r\nd\re "));
+	}
+
+	@Test
+	void compiledScriptWritesTextUnchanged() throws ScriptException {
+		String text = "<p title='x'>\"quoted\" \\n back\\slash\r\n\tline  ${x} </p>";
+		assertEquals(text.replace("\r\n", "\n"), run(ViewCompiler.compile(text + "<% var s = 'unused'; %>")));
+	}
+
+	@Test
+	void compiledScriptRunsCode() throws ScriptException {
+		assertEquals("1,2,3,", run(ViewCompiler.compile("<% for (var i = 1; i <= 3; i++) { %><% _out.write('' + i); %>,<% } %>")));
+	}
+
+	private static String run(String script) throws ScriptException {
+		ScriptEngine engine = new NashornScriptEngineFactory().getScriptEngine();
+		StringWriter out = new StringWriter();
+		engine.put("_out", out);
+		engine.eval(script);
+
+		return out.toString();
+	}
+}
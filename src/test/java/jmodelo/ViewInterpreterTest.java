@@ -0,0 +1,85 @@
+/*   
+ * Copyright 2023 pavlos4265
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jmodelo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+import javax.script.ScriptException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ViewInterpreterTest {
+	@TempDir
+	Path views;
+
+	// a single runtime, so that every render reuses the global scope of the previous one
+	private ViewEngine viewEngine = new ViewEngine(1);
+
+	@Test
+	void requestsDoNotSeeVariablesOfPreviousRequests() throws IOException, ScriptException {
+		String first = view("first.html", "<% var declared = _model; assigned = _model; this.property = _model; %>ok");
+		String second = view("second.html",
+				"<% _s(typeof declared); %>,<% _s(typeof assigned); %>,<% _s(typeof property); %>,<% _s(typeof _model); %>");
+
+		assertEquals("ok", render(first, "secret"));
+		assertEquals("undefined,undefined,undefined,string", render(second, "other"));
+		assertEquals("ok", render(first, "secret"));
+		assertEquals("undefined,undefined,undefined,string", render(second, "other"));
+	}
+
+	@Test
+	void requestsDoNotSeeAttributesOfPreviousRequests() throws IOException, ScriptException {
+		String view = view("view.html", "<% _s(_partialView === null ? 'none' : 'set'); %>");
+
+		assertEquals("set", interpreter().parseView(view, view, null));
+		assertEquals("none", render(view, null));
+	}
+
+	@Test
+	void layoutSeesVariablesOfView() throws IOException, ScriptException {
+		String layout = view("layout.html", "<% var site = 'Shop'; %><main><% _partial(_partialView); %></main><title><% _s(title + ' - ' + site); %></title>");
+		String view = view("view.html", "<% var title = 'Cart'; %><% _s(site); %>");
+
+		assertEquals("<main>Shop</main><title>Cart - Shop</title>", interpreter().parseView(view, layout, null));
+		assertEquals("<main>Shop</main><title>Cart - Shop</title>", interpreter().parseView(view, layout, null));
+	}
+
+	@Test
+	void partialsKeepModelOfParent() throws IOException, ScriptException {
+		String partial = view("partial.html", "[<% _s(_model); %>]");
+		String view = view("view.html", "<% _s(_model); %><% _partial('" + partial + "', 'inner'); %><% _s(_model); %>");
+
+		assertEquals("outer[inner]outer", render(view, "outer"));
+	}
+
+	private String render(String viewFile, Object model) throws IOException, ScriptException {
+		return interpreter().parsePartialView(viewFile, model, true);
+	}
+
+	private ViewInterpreter interpreter() {
+		return new ViewInterpreter(viewEngine, null, "test", new HashMap<>(), null, null);
+	}
+
+	private String view(String name, String contents) throws IOException {
+		return Files.writeString(views.resolve(name), contents).toAbsolutePath().toString();
+	}
+}